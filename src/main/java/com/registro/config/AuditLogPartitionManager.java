@@ -0,0 +1,284 @@
+package com.registro.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Particiona {@code audit_logs} por mes (particionado por rango de PostgreSQL).
+ * Al arrancar convierte la tabla creada por Hibernate en una tabla particionada
+ * y todos los días crea las particiones de los próximos meses. Las particiones
+ * más antiguas que la retención se exportan a un CSV comprimido en disco y se
+ * eliminan. En otras bases la tabla queda como está.
+ */
+@Component
+@Slf4j
+public class AuditLogPartitionManager implements CommandLineRunner {
+
+    private static final String TABLA = "audit_logs";
+    private static final String PREFIJO_PARTICION = "audit_logs_p";
+    private static final DateTimeFormatter FORMATO_MES = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String COLUMNAS = "id, username, action, entity_type, entity_id, details, timestamp, ip_address";
+
+    private static final String[] INDICES = {
+        "CREATE INDEX IF NOT EXISTS idx_audit_logs_username ON audit_logs (username)",
+        "CREATE INDEX IF NOT EXISTS idx_audit_logs_action ON audit_logs (action)",
+        "CREATE INDEX IF NOT EXISTS idx_audit_logs_timestamp ON audit_logs (timestamp)",
+        "CREATE INDEX IF NOT EXISTS idx_audit_logs_timestamp_id ON audit_logs (timestamp, id)",
+        "CREATE INDEX IF NOT EXISTS idx_audit_logs_entity_type ON audit_logs (entity_type)",
+        // Búsqueda combinada de la auditoría (AuditLogSpecifications)
+        "CREATE INDEX IF NOT EXISTS idx_audit_logs_timestamp_action ON audit_logs (timestamp, action)",
+        "CREATE INDEX IF NOT EXISTS idx_audit_logs_entity_timestamp ON audit_logs (entity_type, entity_id, timestamp)",
+        "CREATE INDEX IF NOT EXISTS idx_audit_logs_ip_timestamp ON audit_logs (ip_address, timestamp)",
+        "CREATE INDEX IF NOT EXISTS idx_audit_logs_username_prefijo ON audit_logs (lower(username) text_pattern_ops)"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int mesesAdelantados;
+    private final int retencionMeses;
+    private final Path directorioArchivo;
+    private volatile boolean particionado = false;
+
+    public AuditLogPartitionManager(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${auditoria.particiones.meses-adelantados:3}") int mesesAdelantados,
+                                    @Value("${auditoria.retencion-meses:12}") int retencionMeses,
+                                    @Value("${auditoria.archivo.directorio:archivo-auditoria}") String directorioArchivo) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.mesesAdelantados = mesesAdelantados;
+        this.retencionMeses = retencionMeses;
+        this.directorioArchivo = Paths.get(directorioArchivo);
+    }
+
+    @Override
+    public void run(String... args) {
+        try {
+            if (!esPostgres()) {
+                log.info("Base de datos sin particionado declarativo: audit_logs queda sin particionar");
+                return;
+            }
+            String tipo = jdbcTemplate.query(
+                    "SELECT c.relkind::text FROM pg_class c WHERE c.relname = ? AND pg_table_is_visible(c.oid)",
+                    rs -> rs.next() ? rs.getString(1) : null, TABLA);
+            if ("r".equals(tipo)) {
+                transactionTemplate.executeWithoutResult(status -> convertir());
+            } else if (tipo == null) {
+                transactionTemplate.executeWithoutResult(status -> crearTablaParticionada(YearMonth.now()));
+            }
+            particionado = true;
+            // Los índices nuevos también se agregan a tablas ya particionadas
+            for (String indice : INDICES) {
+                jdbcTemplate.execute(indice);
+            }
+            crearParticionesFuturas();
+        } catch (Exception e) {
+            log.warn("No se pudo particionar audit_logs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Tarea diaria: crea las particiones de los próximos meses y archiva las vencidas.
+     */
+    @Scheduled(cron = "${auditoria.particiones.cron:0 30 3 * * *}")
+    public void mantener() {
+        if (!particionado) {
+            return;
+        }
+        try {
+            crearParticionesFuturas();
+            archivarVencidas();
+        } catch (Exception e) {
+            log.error("Error en el mantenimiento de particiones de auditoría: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Inicio del período retenido en la base: primer día del mes más antiguo que
+     * todavía no se archivó. Las consultas lo usan como cota inferior para que
+     * PostgreSQL descarte las particiones que no hacen falta.
+     */
+    public LocalDate getInicioRetencion() {
+        return YearMonth.now().minusMonths(retencionMeses).atDay(1);
+    }
+
+    public boolean isParticionado() {
+        return particionado;
+    }
+
+    private boolean esPostgres() {
+        String producto = jdbcTemplate.execute((java.sql.Connection con) -> {
+            DatabaseMetaData metaData = con.getMetaData();
+            return metaData.getDatabaseProductName();
+        });
+        return producto != null && producto.toLowerCase().contains("postgres");
+    }
+
+    /**
+     * Reemplaza la tabla común por una particionada y copia los registros existentes.
+     */
+    private void convertir() {
+        log.info("Convirtiendo audit_logs en tabla particionada por mes...");
+        jdbcTemplate.execute("ALTER TABLE audit_logs RENAME TO audit_logs_legado");
+        for (String indice : List.of("idx_audit_logs_username", "idx_audit_logs_action", "idx_audit_logs_timestamp",
+                "idx_audit_logs_timestamp_id", "idx_audit_logs_entity_type", "idx_audit_logs_timestamp_action",
+                "idx_audit_logs_entity_timestamp", "idx_audit_logs_ip_timestamp")) {
+            jdbcTemplate.execute("DROP INDEX IF EXISTS " + indice);
+        }
+
+        LocalDate primero = jdbcTemplate.queryForObject(
+                "SELECT CAST(MIN(timestamp) AS date) FROM audit_logs_legado", LocalDate.class);
+        crearTablaParticionada(primero != null ? YearMonth.from(primero) : YearMonth.now());
+
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM audit_logs_legado", Long.class);
+        if (maxId != null) {
+            jdbcTemplate.queryForObject("SELECT setval('audit_logs_particionada_seq', ?)", Long.class, maxId);
+        }
+        int copiados = jdbcTemplate.update("INSERT INTO audit_logs (" + COLUMNAS + ") SELECT " + COLUMNAS
+                + " FROM audit_logs_legado");
+        jdbcTemplate.execute("DROP TABLE audit_logs_legado");
+        log.info("audit_logs particionada ({} registros copiados)", copiados);
+    }
+
+    private void crearTablaParticionada(YearMonth desde) {
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS audit_logs_particionada_seq");
+        // La clave primaria debe incluir la columna de particionado
+        jdbcTemplate.execute("CREATE TABLE audit_logs ("
+                + "id BIGINT NOT NULL DEFAULT nextval('audit_logs_particionada_seq'), "
+                + "username VARCHAR(255) NOT NULL, "
+                + "action VARCHAR(255) NOT NULL, "
+                + "entity_type VARCHAR(255) NOT NULL, "
+                + "entity_id VARCHAR(255), "
+                + "details TEXT, "
+                + "timestamp TIMESTAMP(6) NOT NULL, "
+                + "ip_address VARCHAR(255), "
+                + "PRIMARY KEY (id, timestamp)"
+                + ") PARTITION BY RANGE (timestamp)");
+        jdbcTemplate.execute("ALTER SEQUENCE audit_logs_particionada_seq OWNED BY audit_logs.id");
+        for (String indice : INDICES) {
+            jdbcTemplate.execute(indice);
+        }
+        for (YearMonth mes = desde; !mes.isAfter(YearMonth.now()); mes = mes.plusMonths(1)) {
+            crearParticion(mes);
+        }
+    }
+
+    private void crearParticionesFuturas() {
+        YearMonth actual = YearMonth.now();
+        for (int i = 0; i <= mesesAdelantados; i++) {
+            crearParticion(actual.plusMonths(i));
+        }
+    }
+
+    private void crearParticion(YearMonth mes) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + nombreParticion(mes) + " PARTITION OF audit_logs "
+                + "FOR VALUES FROM ('" + mes.atDay(1) + "') TO ('" + mes.plusMonths(1).atDay(1) + "')");
+    }
+
+    private static String nombreParticion(YearMonth mes) {
+        return PREFIJO_PARTICION + mes.format(FORMATO_MES);
+    }
+
+    /**
+     * Exporta a {@code audit_logs_pAAAAMM.csv.gz} cada partición más antigua que la
+     * retención y luego la elimina. El archivo se escribe completo antes de borrar
+     * la partición, así que un corte a mitad de camino sólo repite la exportación.
+     */
+    private void archivarVencidas() throws IOException {
+        YearMonth limite = YearMonth.now().minusMonths(retencionMeses);
+        List<String> particiones = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i "
+                        + "JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "JOIN pg_class p ON p.oid = i.inhparent "
+                        + "WHERE p.relname = ? ORDER BY c.relname",
+                String.class, TABLA);
+
+        for (String particion : particiones) {
+            if (!particion.startsWith(PREFIJO_PARTICION)) {
+                continue;
+            }
+            YearMonth mes = YearMonth.parse(particion.substring(PREFIJO_PARTICION.length()), FORMATO_MES);
+            if (!mes.isBefore(limite)) {
+                continue;
+            }
+            Path archivo = exportar(particion);
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("ALTER TABLE audit_logs DETACH PARTITION " + particion);
+                jdbcTemplate.execute("DROP TABLE " + particion);
+            });
+            log.info("Partición {} archivada en {}", particion, archivo);
+        }
+    }
+
+    private Path exportar(String particion) throws IOException {
+        Files.createDirectories(directorioArchivo);
+        Path destino = directorioArchivo.resolve(particion + ".csv.gz");
+        Path temporal = directorioArchivo.resolve(particion + ".csv.gz.tmp");
+
+        // Cursor del lado del servidor: requiere transacción y fetch size
+        JdbcTemplate lector = new JdbcTemplate(jdbcTemplate.getDataSource());
+        lector.setFetchSize(1000);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(temporal)), StandardCharsets.UTF_8))) {
+            writer.write(COLUMNAS.replace(" ", ""));
+            writer.write('\n');
+            transactionTemplate.executeWithoutResult(status ->
+                    lector.query("SELECT " + COLUMNAS + " FROM " + particion + " ORDER BY timestamp, id",
+                            (RowCallbackHandler) rs -> escribirFila(rs, writer)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return destino;
+    }
+
+    private static void escribirFila(ResultSet rs, Writer writer) throws SQLException {
+        try {
+            for (int i = 1; i <= 8; i++) {
+                if (i > 1) {
+                    writer.write(',');
+                }
+                writer.write(csv(rs.getString(i)));
+            }
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csv(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor.indexOf(',') >= 0 || valor.indexOf('"') >= 0 || valor.indexOf('\n') >= 0 || valor.indexOf('\r') >= 0) {
+            return '"' + valor.replace("\"", "\"\"") + '"';
+        }
+        return valor;
+    }
+}
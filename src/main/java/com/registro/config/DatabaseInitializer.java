@@ -14,6 +14,12 @@ public class DatabaseInitializer implements CommandLineRunner {
     @Override
     public void run(String... args) throws Exception {
         try {
+            // En PostgreSQL la tabla es particionada y la administra AuditLogPartitionManager
+            String producto = jdbcTemplate.execute((java.sql.Connection con) -> con.getMetaData().getDatabaseProductName());
+            if (producto != null && producto.toLowerCase().contains("postgres")) {
+                return;
+            }
+
             System.out.println("=== INICIANDO CREACIÓN DE TABLA AUDIT_LOGS ===");
             
             // Primero intentar eliminar la tabla si existe (para recrearla limpia)
@@ -5,6 +5,7 @@ import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
@@ -13,7 +14,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+// Sólo se inicializa Firebase si los archivos se guardan en su bucket
 @Configuration
+@ConditionalOnProperty(name = "almacenamiento.tipo", havingValue = "firebase", matchIfMissing = true)
 public class FirebaseConfig {
 
     @Value("${firebase.json.path:#{null}}")
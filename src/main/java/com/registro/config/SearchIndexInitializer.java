@@ -0,0 +1,68 @@
+package com.registro.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+
+/**
+ * Crea los índices trigram (pg_trgm) que usa la búsqueda de equipos y empleados.
+ * Con estos índices GIN, los predicados {@code lower(col) LIKE '%term%'} dejan de
+ * recorrer la tabla completa. Si la base no es PostgreSQL o la extensión no está
+ * disponible, la búsqueda sigue funcionando con la consulta JPQL original.
+ */
+@Component
+@Slf4j
+public class SearchIndexInitializer implements CommandLineRunner {
+
+    private static final String[] INDICES = {
+        "CREATE INDEX IF NOT EXISTS idx_equipos_marca_trgm ON equipos_informaticos USING gin (lower(marca) gin_trgm_ops)",
+        "CREATE INDEX IF NOT EXISTS idx_equipos_modelo_trgm ON equipos_informaticos USING gin (lower(modelo) gin_trgm_ops)",
+        "CREATE INDEX IF NOT EXISTS idx_equipos_numero_serie_trgm ON equipos_informaticos USING gin (lower(numero_serie) gin_trgm_ops)",
+        "CREATE INDEX IF NOT EXISTS idx_equipos_numero_inventario_trgm ON equipos_informaticos USING gin (lower(numero_inventario) gin_trgm_ops)",
+        "CREATE INDEX IF NOT EXISTS idx_usuarios_nombre_trgm ON usuarios USING gin (lower(nombre) gin_trgm_ops)",
+        "CREATE INDEX IF NOT EXISTS idx_usuarios_apellido_trgm ON usuarios USING gin (lower(apellido) gin_trgm_ops)",
+        "CREATE INDEX IF NOT EXISTS idx_usuarios_legajo_trgm ON usuarios USING gin (lower(legajo) gin_trgm_ops)",
+        // Join de la rama de búsqueda por usuario hacia sus equipos
+        "CREATE INDEX IF NOT EXISTS idx_equipos_usuario_legajo ON equipos_informaticos (usuario_legajo)"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile boolean trigramDisponible = false;
+
+    public SearchIndexInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(String... args) {
+        try {
+            String producto = jdbcTemplate.execute((java.sql.Connection con) -> {
+                DatabaseMetaData metaData = con.getMetaData();
+                return metaData.getDatabaseProductName();
+            });
+            if (producto == null || !producto.toLowerCase().contains("postgres")) {
+                log.info("Base de datos {} sin soporte pg_trgm: se usa la búsqueda LIKE estándar", producto);
+                return;
+            }
+
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            for (String indice : INDICES) {
+                jdbcTemplate.execute(indice);
+            }
+            trigramDisponible = true;
+            log.info("Índices trigram de búsqueda verificados ({} índices)", INDICES.length);
+        } catch (Exception e) {
+            log.warn("No se pudieron crear los índices trigram de búsqueda: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Indica si la búsqueda rankeada por similitud puede usarse.
+     */
+    public boolean isTrigramDisponible() {
+        return trigramDisponible;
+    }
+}
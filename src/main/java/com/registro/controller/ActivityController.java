@@ -1,17 +1,30 @@
 package com.registro.controller;
 
+import com.registro.dto.AuditLogFiltro;
+import com.registro.dto.CursorPage;
 import com.registro.model.AuditLog;
+import com.registro.service.AuditLogExportService;
 import com.registro.service.AuditLogService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 
 @Controller
 public class ActivityController {
@@ -19,6 +32,9 @@ public class ActivityController {
     @Autowired
     private AuditLogService auditLogService;
 
+    @Autowired
+    private AuditLogExportService auditLogExportService;
+
     @GetMapping("/activity")
     @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
     public String showActivity(
@@ -31,19 +47,8 @@ public class ActivityController {
         // Configurar paginación (ordenar por fecha descendente)
         Pageable pageable = PageRequest.of(page, size, Sort.by("timestamp").descending());
         
-        Page<AuditLog> activities;
-        
-        // Aplicar filtros según los parámetros
-        if (criticalOnly) {
-            // Solo acciones críticas (CREAR, EDITAR, ELIMINAR)
-            activities = auditLogService.findCriticalActivities(pageable);
-        } else if (!search.isEmpty()) {
-            // Búsqueda por texto
-            activities = auditLogService.findByUsernameContaining(search, pageable);
-        } else {
-            // Todas las actividades
-            activities = auditLogService.findAll(pageable);
-        }
+        // Los filtros de texto y de acciones críticas se combinan
+        Page<AuditLog> activities = auditLogService.buscarPagina(search, criticalOnly, pageable);
         
         // Obtener estadísticas para las tarjetas
         long totalActivities = auditLogService.getTotalActivities();
@@ -62,4 +67,66 @@ public class ActivityController {
         
         return "activity/list";
     }
+
+    /**
+     * API de actividades con paginación por clave: devuelve {@code nextCursor}
+     * para pedir la página siguiente sin recorrer las anteriores.
+     */
+    @GetMapping("/api/activity")
+    @ResponseBody
+    @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
+    public ResponseEntity<?> listarActividades(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            CursorPage<AuditLog> pagina = auditLogService.findPorCursor(cursor, Math.max(1, Math.min(size, 500)));
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Búsqueda combinada en la auditoría con paginación por clave. Ej:
+     * /api/activity/buscar?desde=2025-01-01T00:00:00&acciones=EDITAR,ELIMINAR&entityType=Equipo&entityId=15
+     * Todos los criterios son opcionales (username es un prefijo).
+     */
+    @GetMapping("/api/activity/buscar")
+    @ResponseBody
+    @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
+    public ResponseEntity<?> buscarActividades(
+            @ModelAttribute AuditLogFiltro filtro,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            CursorPage<AuditLog> pagina = auditLogService.buscar(filtro, cursor, Math.max(1, Math.min(size, 500)));
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Exporta la auditoría en CSV o NDJSON comprimidos con gzip, filtrando por rango
+     * de fechas y acciones. Ej: /api/activity/exportar?formato=ndjson&desde=2025-01-01T00:00:00&acciones=LOGIN_FALLIDO
+     */
+    @GetMapping("/api/activity/exportar")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
+    public void exportarActividades(
+            @ModelAttribute AuditLogFiltro filtro,
+            @RequestParam(defaultValue = "csv") String formato,
+            HttpServletResponse response) throws IOException {
+        String extension = formato.toLowerCase();
+        if (!AuditLogExportService.FORMATOS.contains(extension)) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Formato no soportado: " + formato);
+            return;
+        }
+        String filename = "auditoria_" +
+            LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + "." + extension + ".gz";
+
+        response.setContentType("application/gzip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        auditLogExportService.exportar(filtro.getDesde(), filtro.getHasta(), filtro.getAcciones(), extension,
+                response.getOutputStream());
+    }
 }
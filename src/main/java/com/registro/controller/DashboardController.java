@@ -2,8 +2,7 @@ package com.registro.controller;
 
 import com.registro.model.User;
 import com.registro.service.UserService;
-import com.registro.service.UsuarioService;
-import com.registro.service.EquipoInformaticoService;
+import com.registro.service.EstadisticasService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.Authentication;
@@ -17,8 +16,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 public class DashboardController {
 
     private final UserService userService;
-    private final UsuarioService usuarioService;
-    private final EquipoInformaticoService equipoService;
+    private final EstadisticasService estadisticasService;
 
     /**
      * Dashboard principal - aparece después del login
@@ -33,8 +31,8 @@ public class DashboardController {
         
         // Obtener estadísticas básicas
         UserService.UserStats userStats = userService.getUserStats();
-        long totalUsuarios = usuarioService.listarUsuarios().size();
-        long totalEquipos = equipoService.listarTodos().size();
+        long totalUsuarios = estadisticasService.getTotalUsuarios();
+        long totalEquipos = estadisticasService.getTotalEquipos();
         
         // Agregar datos al modelo
         model.addAttribute("currentUser", currentUser);
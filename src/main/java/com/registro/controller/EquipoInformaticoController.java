@@ -321,7 +321,9 @@ public class EquipoInformaticoController {
     }
 
     /**
-     * Endpoint para búsqueda global en tiempo real (AJAX)
+     * Endpoint para búsqueda global en tiempo real (AJAX).
+     * Si se envía {@code cursor} (vacío para la primera página) se usa paginación por clave
+     * sobre (fechaRegistro, id) y la respuesta incluye {@code nextCursor} en lugar de números de página.
      */
     @GetMapping("/buscar")
     public ResponseEntity<?> buscarEquipos(
@@ -330,9 +332,16 @@ public class EquipoInformaticoController {
             @RequestParam(defaultValue = "fechaRegistro") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir,
             @RequestParam(required = false) String buscar,
-            @RequestParam(required = false) String filtroTipo) {
+            @RequestParam(required = false) String filtroTipo,
+            @RequestParam(required = false) String cursor) {
         
         try {
+            if (cursor != null) {
+                com.registro.dto.CursorPage<EquipoInformatico> pagina = equipoService.buscarEquiposPorCursor(
+                    buscar != null ? buscar.trim() : null, filtroTipo, cursor, Math.max(1, Math.min(size, 500)));
+                return ResponseEntity.ok(pagina);
+            }
+
             // Configurar paginación
             org.springframework.data.domain.Sort.Direction direction = 
                 sortDir.equalsIgnoreCase("desc") ? 
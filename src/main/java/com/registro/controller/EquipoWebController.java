@@ -1,14 +1,22 @@
 // src/main/java/com/registro/controller/EquipoWebController.java
 package com.registro.controller;
 
+import com.registro.dto.EquipoEstadisticas;
+import com.registro.dto.ReportJob;
 import com.registro.model.EquipoInformatico;
 import com.registro.model.HistorialAsignacion;
 import com.registro.model.Site;
 import com.registro.service.EquipoInformaticoService;
+import com.registro.service.ReportCacheService;
+import com.registro.service.ReportJobService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -23,10 +31,17 @@ import java.util.List;
 @RequestMapping("/equipos")
 public class EquipoWebController {
 
+    private static final String CONTENT_TYPE_EXCEL = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
     private final EquipoInformaticoService equipoService;
+    private final ReportJobService reportJobService;
+    private final ReportCacheService reportCacheService;
 
-    public EquipoWebController(EquipoInformaticoService equipoService) {
+    public EquipoWebController(EquipoInformaticoService equipoService, ReportJobService reportJobService,
+                               ReportCacheService reportCacheService) {
         this.equipoService = equipoService;
+        this.reportJobService = reportJobService;
+        this.reportCacheService = reportCacheService;
     }
 
     /**
@@ -77,12 +92,8 @@ public class EquipoWebController {
         Page<EquipoInformatico> equiposPage = equipoService.obtenerEquiposConFiltros(
             buscar, filtroSite, filtroEstado, filtroActivo, pageable);
         
-        // Estadísticas
-        long totalEquipos = equipoService.contarTotalEquipos();
-        long equiposActivos = equipoService.contarEquiposActivos();
-        long equiposAsignados = equipoService.contarEquiposAsignados();
-        long equiposDisponibles = equipoService.contarEquiposDisponibles();
-        long equiposDadosDeBaja = equipoService.contarEquiposDadosDeBaja();
+        // Estadísticas (una sola consulta agrupada)
+        EquipoEstadisticas estadisticas = equipoService.obtenerEstadisticas();
         
         model.addAttribute("equipos", equiposPage);
         model.addAttribute("currentPage", page);
@@ -96,11 +107,11 @@ public class EquipoWebController {
         model.addAttribute("filtroActivo", filtroActivo);
         
         // Estadísticas
-        model.addAttribute("totalEquipos", totalEquipos);
-        model.addAttribute("equiposActivos", equiposActivos);
-        model.addAttribute("equiposAsignados", equiposAsignados);
-        model.addAttribute("equiposDisponibles", equiposDisponibles);
-        model.addAttribute("equiposDadosDeBaja", equiposDadosDeBaja);
+        model.addAttribute("totalEquipos", estadisticas.getTotalEquipos());
+        model.addAttribute("equiposActivos", estadisticas.getEquiposActivos());
+        model.addAttribute("equiposAsignados", estadisticas.getEquiposAsignados());
+        model.addAttribute("equiposDisponibles", estadisticas.getEquiposDisponibles());
+        model.addAttribute("equiposDadosDeBaja", estadisticas.getEquiposDadosDeBaja());
         
         // Enums para los filtros
         model.addAttribute("sites", Site.values());
@@ -118,26 +129,40 @@ public class EquipoWebController {
      */
     @GetMapping("/dashboard")
     public String dashboardEjecutivo(Model model) {
-        // Estadísticas
-        long totalEquipos = equipoService.contarTotalEquipos();
-        long equiposActivos = equipoService.contarEquiposActivos();
-        long equiposAsignados = equipoService.contarEquiposAsignados();
-        long equiposDisponibles = equipoService.contarEquiposDisponibles();
-        long equiposDadosDeBaja = equipoService.contarEquiposDadosDeBaja();
+        // Estadísticas (una sola consulta agrupada)
+        EquipoEstadisticas estadisticas = equipoService.obtenerEstadisticas();
         
-        model.addAttribute("totalEquipos", totalEquipos);
-        model.addAttribute("equiposActivos", equiposActivos);
-        model.addAttribute("equiposAsignados", equiposAsignados);
-        model.addAttribute("equiposDisponibles", equiposDisponibles);
-        model.addAttribute("equiposDadosDeBaja", equiposDadosDeBaja);
+        model.addAttribute("totalEquipos", estadisticas.getTotalEquipos());
+        model.addAttribute("equiposActivos", estadisticas.getEquiposActivos());
+        model.addAttribute("equiposAsignados", estadisticas.getEquiposAsignados());
+        model.addAttribute("equiposDisponibles", estadisticas.getEquiposDisponibles());
+        model.addAttribute("equiposDadosDeBaja", estadisticas.getEquiposDadosDeBaja());
         
         return "equipos/dashboard";
     }
 
     @GetMapping("/estado")
-    public String mostrarEstadoEquipos(Model model) {
+    public String mostrarEstadoEquipos(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "25") int size,
+            @RequestParam(required = false) String buscar,
+            @RequestParam(required = false) String filtroSite,
+            @RequestParam(required = false) String filtroTipo,
+            @RequestParam(required = false) String filtroEstado,
+            @RequestParam(required = false) String filtroAsignacion,
+            Model model) {
         java.util.Map<String, Object> stats = equipoService.getEquipoStatistics();
         model.addAllAttributes(stats);
+
+        Pageable pageable = PageRequest.of(Math.max(0, page), Math.max(1, Math.min(size, 100)),
+                Sort.by(Sort.Direction.DESC, "id"));
+        model.addAttribute("equipos", equipoService.obtenerEquiposEstado(
+                buscar, filtroSite, filtroTipo, filtroEstado, filtroAsignacion, pageable));
+        model.addAttribute("buscar", buscar);
+        model.addAttribute("filtroSite", filtroSite);
+        model.addAttribute("filtroTipo", filtroTipo);
+        model.addAttribute("filtroEstado", filtroEstado);
+        model.addAttribute("filtroAsignacion", filtroAsignacion);
         return "equipos/estado-equipos";
     }
 
@@ -267,10 +292,57 @@ public class EquipoWebController {
      */
     @GetMapping("/exportar/excel")
     public void exportarExcel(HttpServletResponse response) throws IOException {
-        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-        response.setHeader("Content-Disposition", "attachment; filename=dashboard_ejecutivo_" + 
-            java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd")) + ".xlsx");
+        response.setContentType(CONTENT_TYPE_EXCEL);
+        response.setHeader("Content-Disposition", "attachment; filename=" + nombreExportacion("xlsx"));
         
+        reportCacheService.escribir("dashboard-excel", this::escribirExcel, response.getOutputStream());
+    }
+
+    /**
+     * Exportar equipos a PDF
+     */
+    @GetMapping("/exportar/pdf")
+    public void exportarPDF(HttpServletResponse response) throws IOException {
+        response.setContentType("application/pdf");
+        response.setHeader("Content-Disposition", "attachment; filename=" + nombreExportacion("pdf"));
+        
+        reportCacheService.escribir("dashboard-pdf", this::escribirPDF, response.getOutputStream());
+    }
+
+    /**
+     * Encola la exportación del dashboard (excel o pdf) en segundo plano.
+     * Devuelve el trabajo; su estado y descarga se consultan en /reportes/jobs/{id},
+     * con los mismos roles que se exigen acá.
+     */
+    @PostMapping("/exportar/{formato}/job")
+    @ResponseBody
+    @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
+    public ResponseEntity<?> encolarExportacion(@PathVariable String formato, Authentication authentication) {
+        try {
+            ReportJob trabajo;
+            if ("excel".equalsIgnoreCase(formato)) {
+                trabajo = reportJobService.enviar("dashboard-excel", nombreExportacion("xlsx"),
+                        CONTENT_TYPE_EXCEL, authentication.getName(),
+                        out -> reportCacheService.escribir("dashboard-excel", this::escribirExcel, out));
+            } else if ("pdf".equalsIgnoreCase(formato)) {
+                trabajo = reportJobService.enviar("dashboard-pdf", nombreExportacion("pdf"),
+                        "application/pdf", authentication.getName(),
+                        out -> reportCacheService.escribir("dashboard-pdf", this::escribirPDF, out));
+            } else {
+                return ResponseEntity.badRequest().body("Error: formato no soportado: " + formato);
+            }
+            return ResponseEntity.accepted().body(trabajo);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Error: " + e.getMessage());
+        }
+    }
+
+    private String nombreExportacion(String extension) {
+        return "dashboard_ejecutivo_" + 
+            java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd")) + "." + extension;
+    }
+
+    private void escribirExcel(java.io.OutputStream outputStream) throws IOException {
         try (org.apache.poi.xssf.usermodel.XSSFWorkbook workbook = new org.apache.poi.xssf.usermodel.XSSFWorkbook()) {
             
             // ===== HOJA 1: DASHBOARD EJECUTIVO AGRUPADO POR SITE =====
@@ -434,20 +506,12 @@ public class EquipoWebController {
                 resumenSheet.autoSizeColumn(i);
             }
             
-            workbook.write(response.getOutputStream());
+            workbook.write(outputStream);
         }
     }
 
-    /**
-     * Exportar equipos a PDF
-     */
-    @GetMapping("/exportar/pdf")
-    public void exportarPDF(HttpServletResponse response) throws IOException {
-        response.setContentType("application/pdf");
-        response.setHeader("Content-Disposition", "attachment; filename=dashboard_ejecutivo_" + 
-            java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd")) + ".pdf");
-        
-        try (com.itextpdf.kernel.pdf.PdfWriter writer = new com.itextpdf.kernel.pdf.PdfWriter(response.getOutputStream());
+    private void escribirPDF(java.io.OutputStream outputStream) throws IOException {
+        try (com.itextpdf.kernel.pdf.PdfWriter writer = new com.itextpdf.kernel.pdf.PdfWriter(outputStream);
              com.itextpdf.kernel.pdf.PdfDocument pdf = new com.itextpdf.kernel.pdf.PdfDocument(writer);
              com.itextpdf.layout.Document document = new com.itextpdf.layout.Document(pdf)) {
             
@@ -467,59 +531,8 @@ public class EquipoWebController {
             // Headers para las tablas por site
             String[] tableHeaders = {"Tipo de Equipo", "Total", "Activos", "Inactivos", "En Reparación", "En Mantenimiento", "Dados de Baja", "Asignados", "Disponibles", "% Activos", "% Asignados"};
             
-            // Obtener equipos y agrupar por site y tipo (igual que en Excel)
-            List<EquipoInformatico> equipos = equipoService.listarTodos();
-            java.util.Map<String, java.util.Map<String, java.util.Map<String, Object>>> siteData = new java.util.LinkedHashMap<>();
-            
-            // Agrupar equipos por site y tipo
-            for (EquipoInformatico equipo : equipos) {
-                String siteName = equipo.getSite() != null ? equipo.getSite().getLabel() : "Sin ubicación";
-                String tipoEquipo = equipo.getTipo() != null ? equipo.getTipo().getLabel() : "Sin especificar";
-                
-                siteData.computeIfAbsent(siteName, k -> new java.util.LinkedHashMap<>())
-                        .computeIfAbsent(tipoEquipo, k -> {
-                            java.util.Map<String, Object> data = new java.util.HashMap<>();
-                            data.put("total", 0);
-                            data.put("activos", 0);
-                            data.put("dadosDeBaja", 0);
-                            data.put("enReparacion", 0);
-                            data.put("enMantenimiento", 0);
-                            data.put("asignados", 0);
-                            data.put("disponibles", 0);
-                            return data;
-                        });
-                
-                java.util.Map<String, Object> tipoData = siteData.get(siteName).get(tipoEquipo);
-                tipoData.put("total", (Integer) tipoData.get("total") + 1);
-                
-                if (equipo.getActivo() != null && equipo.getActivo()) {
-                    tipoData.put("activos", (Integer) tipoData.get("activos") + 1);
-                }
-                
-                if (equipo.getEstado() != null) {
-                    switch (equipo.getEstado()) {
-                        case DADO_DE_BAJA:
-                            tipoData.put("dadosDeBaja", (Integer) tipoData.get("dadosDeBaja") + 1);
-                            break;
-                        case EN_REPARACION:
-                            tipoData.put("enReparacion", (Integer) tipoData.get("enReparacion") + 1);
-                            break;
-                        case EN_MANTENIMIENTO:
-                            tipoData.put("enMantenimiento", (Integer) tipoData.get("enMantenimiento") + 1);
-                            break;
-                        case ACTIVO:
-                        case INACTIVO:
-                            // Los equipos activos/inactivos ya se cuentan en la condición anterior
-                            break;
-                    }
-                }
-                
-                if (equipo.getUsuario() != null) {
-                    tipoData.put("asignados", (Integer) tipoData.get("asignados") + 1);
-                } else {
-                    tipoData.put("disponibles", (Integer) tipoData.get("disponibles") + 1);
-                }
-            }
+            // Conteos agregados por site y tipo calculados en la base de datos
+            java.util.Map<String, java.util.Map<String, java.util.Map<String, Object>>> siteData = equipoService.obtenerResumenPorSiteYTipo();
             
             // Crear tablas separadas por site en PDF
             for (java.util.Map.Entry<String, java.util.Map<String, java.util.Map<String, Object>>> siteEntry : siteData.entrySet()) {
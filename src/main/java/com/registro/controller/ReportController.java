@@ -1,5 +1,8 @@
 package com.registro.controller;
 
+import com.registro.dto.ReportJob;
+import com.registro.service.ReportCacheService;
+import com.registro.service.ReportJobService;
 import com.registro.service.ReportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -7,13 +10,20 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
 
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Optional;
 
 @Controller
 @RequestMapping("/reportes")
@@ -22,45 +32,116 @@ public class ReportController {
     @Autowired
     private ReportService reportService;
 
+    @Autowired
+    private ReportJobService reportJobService;
+
+    @Autowired
+    private ReportCacheService reportCacheService;
+
     @GetMapping("/excel")
     @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
-    public ResponseEntity<byte[]> downloadExcelReport() {
-        try {
-            byte[] excelData = reportService.generateExcelReport();
-            
-            String filename = "reporte_sistema_" + 
-                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".xlsx";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentDispositionFormData("attachment", filename);
-            headers.setContentLength(excelData.length);
-            
-            return new ResponseEntity<>(excelData, headers, HttpStatus.OK);
-            
-        } catch (IOException e) {
-            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+    public void downloadExcelReport(HttpServletResponse response) throws IOException {
+        String filename = "reporte_sistema_" + 
+            LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".xlsx";
+        
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        
+        // Se sirve desde la caché si los datos no cambiaron desde la última generación
+        reportCacheService.escribir("sistema-excel", reportService::writeExcelReport, response.getOutputStream());
     }
 
     @GetMapping("/pdf")
     @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
-    public ResponseEntity<byte[]> downloadPdfReport() {
+    public void downloadPdfReport(HttpServletResponse response) throws IOException {
+        String filename = "reporte_sistema_" + 
+            LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
+        
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        
+        // Se sirve desde la caché si los datos no cambiaron desde la última generación
+        reportCacheService.escribir("sistema-pdf", reportService::writePdfReport, response.getOutputStream());
+    }
+
+    /**
+     * Encola la generación del reporte del sistema (excel o pdf) en segundo plano
+     * y devuelve el trabajo. Pedidos iguales en curso comparten el mismo trabajo.
+     */
+    @PostMapping("/{formato}/job")
+    @ResponseBody
+    @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
+    public ResponseEntity<?> encolarReporte(@PathVariable String formato, Authentication authentication) {
+        String fecha = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
         try {
-            byte[] pdfData = reportService.generatePdfReport();
-            
-            String filename = "reporte_sistema_" + 
-                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", filename);
-            headers.setContentLength(pdfData.length);
-            
-            return new ResponseEntity<>(pdfData, headers, HttpStatus.OK);
-            
-        } catch (IOException e) {
-            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+            ReportJob trabajo;
+            if ("excel".equalsIgnoreCase(formato)) {
+                trabajo = reportJobService.enviar("sistema-excel", "reporte_sistema_" + fecha + ".xlsx",
+                        MediaType.APPLICATION_OCTET_STREAM_VALUE, authentication.getName(),
+                        out -> reportCacheService.escribir("sistema-excel", reportService::writeExcelReport, out));
+            } else if ("pdf".equalsIgnoreCase(formato)) {
+                trabajo = reportJobService.enviar("sistema-pdf", "reporte_sistema_" + fecha + ".pdf",
+                        MediaType.APPLICATION_PDF_VALUE, authentication.getName(),
+                        out -> reportCacheService.escribir("sistema-pdf", reportService::writePdfReport, out));
+            } else {
+                return ResponseEntity.badRequest().body("Error: formato no soportado: " + formato);
+            }
+            return ResponseEntity.accepted().body(trabajo);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Error: " + e.getMessage());
         }
     }
+
+    /**
+     * Estado y progreso (bytes escritos) de un trabajo de reporte.
+     * Sólo lo ven quienes lo pidieron y los administradores.
+     */
+    @GetMapping("/jobs/{id}")
+    @ResponseBody
+    @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
+    public ResponseEntity<ReportJob> estadoReporte(@PathVariable String id, Authentication authentication) {
+        return obtenerTrabajo(id, authentication)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Descarga el artefacto de un trabajo completado. Mismas restricciones que el estado.
+     */
+    @GetMapping("/jobs/{id}/descarga")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
+    public void descargarReporte(@PathVariable String id, Authentication authentication,
+                                 HttpServletResponse response) throws IOException {
+        ReportJob trabajo = obtenerTrabajo(id, authentication).orElse(null);
+        if (trabajo == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "Reporte no encontrado");
+            return;
+        }
+        if (trabajo.getEstado() != ReportJob.Estado.COMPLETADO) {
+            response.sendError(HttpStatus.CONFLICT.value(), "El reporte está en estado " + trabajo.getEstado());
+            return;
+        }
+        
+        response.setContentType(trabajo.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + trabajo.getNombreArchivo() + "\"");
+        response.setContentLengthLong(reportJobService.tamanio(trabajo));
+        
+        reportJobService.transferir(trabajo, response.getOutputStream());
+    }
+
+    private Optional<ReportJob> obtenerTrabajo(String id, Authentication authentication) {
+        boolean administrador = authentication.getAuthorities().stream()
+                .anyMatch(autoridad -> "ROLE_ADMIN".equals(autoridad.getAuthority()));
+        return reportJobService.obtener(id, authentication.getName(), administrador);
+    }
+
+    /**
+     * Aciertos, fallos y tamaño de la caché de reportes.
+     */
+    @GetMapping("/cache")
+    @ResponseBody
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> estadisticasCache() {
+        return reportCacheService.estadisticas();
+    }
 }
@@ -1,6 +1,8 @@
 // src/main/java/com/registro/controller/UsuarioController.java
 package com.registro.controller;
 
+import com.registro.dto.ArchivoAlmacenado;
+import com.registro.dto.UsuarioResumen;
 import com.registro.model.Archivo;
 import com.registro.model.EquipoInformatico;
 import com.registro.model.Site;
@@ -10,14 +12,17 @@ import com.registro.service.AuditLogService;
 import com.registro.service.EquipoInformaticoService;
 import com.registro.service.UsuarioService;
 
-import jakarta.transaction.Transactional;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.MediaType;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -26,8 +31,14 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Controller
 @RequestMapping("/usuarios")
@@ -51,30 +62,73 @@ public class UsuarioController {
     }
 
     @GetMapping
-    public String listarUsuarios(Model model) {
-        List<Usuario> usuarios = usuarioService.listarUsuarios();
-        model.addAttribute("usuarios", usuarios);
+    public String listarUsuarios(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "25") int size,
+            @RequestParam(defaultValue = "legajo") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(required = false) String site,
+            @RequestParam(required = false) String conEquipos,
+            @RequestParam(required = false) String buscar,
+            Model model) {
+        // Primera página renderizada en el servidor; el resto se carga desde /usuarios/api/directorio
+        Page<UsuarioResumen> usuarios = usuarioService.buscarDirectorio(
+            site, conEquipos, buscar, page, limitarTamanio(size), sortBy, sortDir);
+        model.addAttribute("usuarios", usuarios.getContent());
+        model.addAttribute("pagina", usuarios);
+        model.addAttribute("sites", Site.values());
+        model.addAttribute("sortBy", sortBy);
+        model.addAttribute("sortDir", sortDir);
+        model.addAttribute("site", site);
+        model.addAttribute("conEquipos", conEquipos);
+        model.addAttribute("buscar", buscar);
         
         // Estadísticas básicas para mostrar en el dashboard
-        long totalUsuarios = usuarios.size();
-        long totalEquipos = usuarios.stream()
-            .mapToLong(u -> u.getEquiposInformaticos() != null ? u.getEquiposInformaticos().size() : 0)
-            .sum();
-        
-        model.addAttribute("totalUsuarios", totalUsuarios);
-        model.addAttribute("totalEquipos", totalEquipos);
+        model.addAttribute("totalUsuarios", usuarios.getTotalElements());
+        model.addAttribute("totalEquipos", usuarioService.contarEquiposDirectorio(site, conEquipos, buscar));
         
         return "usuario-list";
     }
 
+    /**
+     * API del directorio de empleados para el scroll infinito de la lista.
+     */
+    @GetMapping("/api/directorio")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> directorio(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "25") int size,
+            @RequestParam(defaultValue = "legajo") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(required = false) String site,
+            @RequestParam(required = false) String conEquipos,
+            @RequestParam(required = false) String buscar) {
+        Page<UsuarioResumen> usuarios = usuarioService.buscarDirectorio(
+            site, conEquipos, buscar, page, limitarTamanio(size), sortBy, sortDir);
+        
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        respuesta.put("content", usuarios.getContent());
+        respuesta.put("page", usuarios.getNumber());
+        respuesta.put("size", usuarios.getSize());
+        respuesta.put("totalElements", usuarios.getTotalElements());
+        respuesta.put("totalPages", usuarios.getTotalPages());
+        respuesta.put("hasNext", usuarios.hasNext());
+        return ResponseEntity.ok(respuesta);
+    }
+
+    private static int limitarTamanio(int size) {
+        return Math.max(1, Math.min(size, 200));
+    }
+
     @GetMapping("/nuevo")
     public String mostrarFormulario(Model model) {
         model.addAttribute("usuario", new Usuario());
         return "usuario-form";
     }
 
+    // Los archivos se suben antes y sin transacción; el usuario, sus archivos y
+    // sus equipos se registran después en una sola transacción (UsuarioService)
     @PostMapping
-    @Transactional // Add this annotation
     public String crearYSubir(
             @RequestParam("legajo") String legajo,
             @RequestParam("nombre") String nombre,
@@ -88,9 +142,16 @@ public class UsuarioController {
             Model model
     ) {
         try {
-            // 1) Crear usuario
-            Usuario creado = usuarioService.crearUsuario(
-                legajo, nombre, apellido, telefono, correoElectronico, direccion, site
+            // 1) Leer los equipos antes de transferir nada
+            List<EquipoRequest> equipos = leerEquipos(equiposJson);
+
+            // 2) Subir sólo archivos no vacíos
+            List<Archivo> subidos = archivoService.subirContenido(archivos);
+
+            // 3) Crear usuario, registrar archivos y dar de alta equipos, todo o nada
+            Usuario creado = usuarioService.crearUsuarioCompleto(
+                legajo, nombre, apellido, telefono, correoElectronico, direccion, site,
+                subidos, usuario -> altaEquipos(usuario.getLegajo(), equipos)
             );
             
             // Registrar auditoría de creación de usuario
@@ -100,85 +161,20 @@ public class UsuarioController {
                 creado.getLegajo(),
                 "Usuario creado: " + nombre + " " + apellido + " (Legajo: " + legajo + ")"
             );
-            // 2) Subir sólo archivos no vacíos
-            if (archivos != null && Arrays.stream(archivos).anyMatch(f -> f != null && !f.isEmpty())) {
-                archivoService.subirArchivos(legajo, archivos);
-            }
-            
-            // 3) Procesar equipos informáticos
-            if (equiposJson != null && !equiposJson.trim().isEmpty() && !"[]".equals(equiposJson.trim())) {
-                try {
-                    TypeReference<List<EquipoRequest>> typeRef = new TypeReference<List<EquipoRequest>>() {};
-                    List<EquipoRequest> equipos = objectMapper.readValue(equiposJson, typeRef);
-                    
-                    for (EquipoRequest equipoReq : equipos) {
-                        // Si el ID del equipo está presente, es una asignación de equipo existente
-                        if (equipoReq.getId() != null) {
-                            equipoService.asignarEquipoAUsuario(equipoReq.getId(), legajo);
-                        } else {
-                            // Si no hay ID, es un equipo nuevo
-                            try {
-                                equipoService.crearEquipo(
-                                    legajo,
-                                    convertirTipoEquipo(equipoReq.getTipo()),
-                                    equipoReq.getMarca(),
-                                    equipoReq.getModelo(),
-                                    equipoReq.getNumeroSerie(),
-                                    equipoReq.getNumeroInventario(),
-                                    convertirEstadoEquipo(equipoReq.getEstado()),
-                                    equipoReq.getObservaciones()
-                                );
-                            } catch (org.springframework.dao.DataIntegrityViolationException e) {
-                                // Error de clave duplicada - mostrar mensaje amigable
-                                String numeroInventario = equipoReq.getNumeroInventario();
-                                String numeroSerie = equipoReq.getNumeroSerie();
-                                String tipoEquipo = equipoReq.getTipo();
-                                
-                                String mensajeError = "❌ No se pudo crear el equipo " + tipoEquipo + ": ";
-                                
-                                // Detectar si es error de clave duplicada
-                                String errorMessage = e.getMessage().toLowerCase();
-                                if (errorMessage.contains("duplicate") || errorMessage.contains("duplicado") || 
-                                    errorMessage.contains("unique") || errorMessage.contains("único")) {
-                                    
-                                    if (numeroInventario != null && !numeroInventario.isEmpty()) {
-                                        mensajeError += "Ya existe un equipo con el número de inventario '" + numeroInventario + "'. ";
-                                    } else if (numeroSerie != null && !numeroSerie.isEmpty()) {
-                                        mensajeError += "Ya existe un equipo con el número de serie '" + numeroSerie + "'. ";
-                                    } else {
-                                        mensajeError += "Ya existe un equipo con las mismas características. ";
-                                    }
-                                    
-                                    mensajeError += "Por favor, verifica los datos.";
-                                } else {
-                                    mensajeError += "Error de integridad de datos: " + e.getMessage();
-                                }
-                                
-                                throw new RuntimeException(mensajeError);
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException("Error procesando equipos: " + e.getMessage());
-                }
-            }
             
             model.addAttribute("mensaje",
                 "Usuario '" + creado.getLegajo() + "' creado con archivos y equipos OK");
         } catch (Exception e) {
             model.addAttribute("error", "Error: " + e.getMessage());
         }
-        // 3) Limpiar formulario
+        // 4) Limpiar formulario
         model.addAttribute("usuario", new Usuario());
         return "usuario-form";
     }
 
     @GetMapping("/editar")
     public String mostrarEdicion(@RequestParam("legajo") String legajo, Model model) {
-        Usuario usuario = usuarioService.listarUsuarios().stream()
-            .filter(u -> u.getLegajo().equals(legajo))
-            .findFirst()
-            .orElseThrow(() -> new RuntimeException("Usuario no encontrado: " + legajo));
+        Usuario usuario = usuarioService.obtenerUsuarioConDetalle(legajo);
         model.addAttribute("usuario", usuario);
         
         // Los archivos ya vienen cargados con el usuario por la relación JPA
@@ -202,10 +198,7 @@ public class UsuarioController {
     ) {
         try {
             // 1) Cargar y actualizar datos
-            Usuario usuario = usuarioService.listarUsuarios().stream()
-                .filter(u -> u.getLegajo().equals(legajoOriginal))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado: " + legajoOriginal));
+            Usuario usuario = usuarioService.obtenerUsuarioConDetalle(legajoOriginal);
             usuario.setNombre(nombre);
             usuario.setApellido(apellido);
             usuario.setTelefono(telefono);
@@ -319,10 +312,7 @@ public class UsuarioController {
             model.addAttribute("error", "Error: " + e.getMessage());
         }
         // 3) Recargar usuario actualizado con sus archivos
-        Usuario actualizado = usuarioService.listarUsuarios().stream()
-            .filter(u -> u.getLegajo().equals(legajoOriginal))
-            .findFirst()
-            .orElseThrow(() -> new RuntimeException("Usuario no encontrado: " + legajoOriginal));
+        Usuario actualizado = usuarioService.obtenerUsuarioConDetalle(legajoOriginal);
         model.addAttribute("usuario", actualizado);
         return "usuario-edit";
     }
@@ -344,9 +334,7 @@ public class UsuarioController {
     ) {
         try {
             // 1) Buscar usuario por ID
-            Usuario usuario = usuarioService.listarUsuarios().stream()
-                .filter(u -> u.getId().equals(id))
-                .findFirst()
+            Usuario usuario = usuarioService.buscarUsuarioConDetalle(id)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
             
             String legajoOriginal = usuario.getLegajo();
@@ -393,16 +381,14 @@ public class UsuarioController {
             model.addAttribute("mensaje", "Usuario actualizado correctamente");
             
             // Recargar usuario actualizado
-            Usuario actualizado = usuarioService.obtenerUsuarioPorLegajo(legajo);
+            Usuario actualizado = usuarioService.obtenerUsuarioConDetalle(legajo);
             model.addAttribute("usuario", actualizado);
             
         } catch (Exception e) {
             model.addAttribute("error", "Error: " + e.getMessage());
             // En caso de error, recargar el usuario original
             try {
-                Usuario usuario = usuarioService.listarUsuarios().stream()
-                    .filter(u -> u.getId().equals(id))
-                    .findFirst()
+                Usuario usuario = usuarioService.buscarUsuarioConDetalle(id)
                     .orElse(new Usuario());
                 model.addAttribute("usuario", usuario);
             } catch (Exception ex) {
@@ -439,9 +425,7 @@ public class UsuarioController {
         }
         
         // Recargar la página de edición del usuario
-        Usuario usuario = usuarioService.listarUsuarios().stream()
-            .filter(u -> u.getId().equals(usuarioId))
-            .findFirst()
+        Usuario usuario = usuarioService.buscarUsuarioConDetalle(usuarioId)
             .orElse(new Usuario());
         
         model.addAttribute("usuario", usuario);
@@ -476,9 +460,7 @@ public class UsuarioController {
         }
         
         // Recargar la página de edición del usuario
-        Usuario usuario = usuarioService.listarUsuarios().stream()
-            .filter(u -> u.getId().equals(usuarioId))
-            .findFirst()
+        Usuario usuario = usuarioService.buscarUsuarioConDetalle(usuarioId)
             .orElse(new Usuario());
         
         model.addAttribute("usuario", usuario);
@@ -487,28 +469,18 @@ public class UsuarioController {
         return "usuario-edit";
     }
 
-    // Endpoint para descargar archivo
+    // Endpoint para descargar archivo: el contenido se copia del almacenamiento a la respuesta en
+    // bloques, con soporte de Range (un rango) e If-Range para reanudar descargas
     @GetMapping("/archivos/descargar/{archivoId}")
-    public ResponseEntity<Resource> descargarArchivo(@PathVariable Long archivoId) {
+    public void descargarArchivo(@PathVariable Long archivoId,
+                                 @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+                                 @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+                                 HttpServletResponse response) throws IOException {
+        Archivo archivo;
+        ArchivoAlmacenado almacenado;
         try {
-            Archivo archivo = archivoService.obtenerArchivoPorId(archivoId);
-            byte[] data = archivoService.descargarArchivoBytes(archivo.getPath());
-            ByteArrayResource resource = new ByteArrayResource(data);
-
-            // Registrar auditoría de descarga de archivo
-            String detalles = "Archivo descargado: " + archivo.getNombreOriginal() + " (Usuario Propietario: " + archivo.getUsuario().getLegajo() + ")";
-            auditLogService.logActivity(
-                "DESCARGAR",
-                "Archivo",
-                archivoId.toString(),
-                detalles
-            );
-
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + archivo.getNombreOriginal() + "\"")
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .contentLength(data.length)
-                    .body(resource);
+            archivo = archivoService.obtenerArchivoPorId(archivoId);
+            almacenado = archivoService.obtenerAlmacenado(archivo);
         } catch (Exception e) {
             // Opcional: Registrar intento de descarga fallido
             auditLogService.logActivity(
@@ -517,13 +489,149 @@ public class UsuarioController {
                 archivoId.toString(),
                 "Intento de descarga fallido. Motivo: " + e.getMessage()
             );
-            return ResponseEntity.notFound().build();
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        long tamanio = almacenado.getTamanio();
+        // El contenido está direccionado por SHA-256: el ETag no cambia cuando el
+        // procesamiento reemplaza el original por su versión comprimida
+        String etag = "\"" + (archivo.getHash() != null ? archivo.getHash() : almacenado.getVersion()) + "\"";
+        long desde = 0;
+        long hasta = tamanio - 1;
+        boolean parcial = false;
+
+        // Con If-Range sólo se respeta el rango si el archivo no cambió desde la descarga anterior
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+            try {
+                List<HttpRange> rangos = HttpRange.parseRanges(rangeHeader);
+                if (rangos.size() == 1) {
+                    desde = rangos.get(0).getRangeStart(tamanio);
+                    hasta = rangos.get(0).getRangeEnd(tamanio);
+                    parcial = true;
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + tamanio);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(archivo.getNombreOriginal(), StandardCharsets.UTF_8).build().toString());
+        response.setContentType(almacenado.getContentType() != null ? almacenado.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(hasta - desde + 1);
+        if (parcial) {
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + desde + "-" + hasta + "/" + tamanio);
+        }
+
+        // Registrar auditoría de descarga de archivo
+        String detalles = "Archivo descargado: " + archivo.getNombreOriginal() + " (Usuario Propietario: " + archivo.getUsuario().getLegajo() + ")"
+                + (parcial ? " [bytes " + desde + "-" + hasta + "]" : "");
+        auditLogService.logActivity(
+            "DESCARGAR",
+            "Archivo",
+            archivoId.toString(),
+            detalles
+        );
+
+        if (tamanio > 0) {
+            archivoService.transferir(almacenado, desde, hasta, response.getOutputStream());
         }
     }
 
+    // Endpoint para la miniatura de un archivo en los listados; no se audita porque
+    // la pide el navegador al mostrar la página
+    @GetMapping("/archivos/miniatura/{archivoId}")
+    public void miniaturaArchivo(@PathVariable Long archivoId, HttpServletResponse response) throws IOException {
+        Optional<ArchivoAlmacenado> miniatura;
+        try {
+            miniatura = archivoService.obtenerMiniatura(archivoService.obtenerArchivoPorId(archivoId));
+        } catch (Exception e) {
+            miniatura = Optional.empty();
+        }
+        if (miniatura.isEmpty()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        // El contenido está direccionado por hash: la miniatura de un archivo no cambia
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(Duration.ofDays(30)).cachePrivate().getHeaderValue());
+        response.setContentType(MediaType.IMAGE_JPEG_VALUE);
+        response.setContentLengthLong(miniatura.get().getTamanio());
+        archivoService.transferir(miniatura.get(), 0, miniatura.get().getTamanio() - 1, response.getOutputStream());
+    }
+
     /**
      * Convierte el tipo de equipo del frontend al enum correspondiente
      */
+    private List<EquipoRequest> leerEquipos(String equiposJson) {
+        if (equiposJson == null || equiposJson.trim().isEmpty() || "[]".equals(equiposJson.trim())) {
+            return List.of();
+        }
+        try {
+            return objectMapper.readValue(equiposJson, new TypeReference<List<EquipoRequest>>() {});
+        } catch (Exception e) {
+            throw new RuntimeException("Error procesando equipos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Crea los equipos nuevos y asigna los existentes (los que traen id) al usuario.
+     */
+    private void altaEquipos(String legajo, List<EquipoRequest> equipos) {
+        for (EquipoRequest equipoReq : equipos) {
+            // Si el ID del equipo está presente, es una asignación de equipo existente
+            if (equipoReq.getId() != null) {
+                equipoService.asignarEquipoAUsuario(equipoReq.getId(), legajo);
+            } else {
+                // Si no hay ID, es un equipo nuevo
+                try {
+                    equipoService.crearEquipo(
+                        legajo,
+                        convertirTipoEquipo(equipoReq.getTipo()),
+                        equipoReq.getMarca(),
+                        equipoReq.getModelo(),
+                        equipoReq.getNumeroSerie(),
+                        equipoReq.getNumeroInventario(),
+                        convertirEstadoEquipo(equipoReq.getEstado()),
+                        equipoReq.getObservaciones()
+                    );
+                } catch (org.springframework.dao.DataIntegrityViolationException e) {
+                    // Error de clave duplicada - mostrar mensaje amigable
+                    String numeroInventario = equipoReq.getNumeroInventario();
+                    String numeroSerie = equipoReq.getNumeroSerie();
+                    String tipoEquipo = equipoReq.getTipo();
+                    
+                    String mensajeError = "❌ No se pudo crear el equipo " + tipoEquipo + ": ";
+                    
+                    // Detectar si es error de clave duplicada
+                    String errorMessage = e.getMessage().toLowerCase();
+                    if (errorMessage.contains("duplicate") || errorMessage.contains("duplicado") || 
+                        errorMessage.contains("unique") || errorMessage.contains("único")) {
+                        
+                        if (numeroInventario != null && !numeroInventario.isEmpty()) {
+                            mensajeError += "Ya existe un equipo con el número de inventario '" + numeroInventario + "'. ";
+                        } else if (numeroSerie != null && !numeroSerie.isEmpty()) {
+                            mensajeError += "Ya existe un equipo con el número de serie '" + numeroSerie + "'. ";
+                        } else {
+                            mensajeError += "Ya existe un equipo con las mismas características. ";
+                        }
+                        
+                        mensajeError += "Por favor, verifica los datos.";
+                    } else {
+                        mensajeError += "Error de integridad de datos: " + e.getMessage();
+                    }
+                    
+                    throw new RuntimeException(mensajeError);
+                }
+            }
+        }
+    }
+
     private EquipoInformatico.TipoEquipo convertirTipoEquipo(String tipoFrontend) {
         if (tipoFrontend == null) {
             throw new IllegalArgumentException("Tipo de equipo no puede ser null");
@@ -643,9 +751,7 @@ public class UsuarioController {
     @GetMapping("/{id}/editar")
     public String mostrarFormularioEdicion(@PathVariable Long id, Model model) {
         try {
-            Usuario usuario = usuarioService.listarUsuarios().stream()
-                .filter(u -> u.getId().equals(id))
-                .findFirst()
+            Usuario usuario = usuarioService.buscarUsuarioConDetalle(id)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
             
             model.addAttribute("usuario", usuario);
@@ -660,9 +766,7 @@ public class UsuarioController {
     @GetMapping("/{id}/ver")
     public String verUsuario(@PathVariable Long id, Model model) {
         try {
-            Usuario usuario = usuarioService.listarUsuarios().stream()
-                .filter(u -> u.getId().equals(id))
-                .findFirst()
+            Usuario usuario = usuarioService.buscarUsuarioConDetalle(id)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
             
             model.addAttribute("usuario", usuario);
@@ -0,0 +1,46 @@
+package com.registro.dto;
+
+/**
+ * Metadatos de un objeto guardado en el almacenamiento de archivos.
+ * {@code version} cambia cada vez que el contenido se reemplaza y sirve como ETag.
+ * Si el objeto es la versión comprimida de un archivo, {@code tamanio} y
+ * {@code contentType} son los del original y {@code tamanioAlmacenado} el de los
+ * bytes guardados.
+ */
+public class ArchivoAlmacenado {
+
+    private final String ruta;
+    private final long tamanio;
+    private final String contentType;
+    private final String version;
+    private final boolean comprimido;
+    private final long tamanioAlmacenado;
+
+    public ArchivoAlmacenado(String ruta, long tamanio, String contentType, String version) {
+        this(ruta, tamanio, contentType, version, false, tamanio);
+    }
+
+    private ArchivoAlmacenado(String ruta, long tamanio, String contentType, String version,
+                              boolean comprimido, long tamanioAlmacenado) {
+        this.ruta = ruta;
+        this.tamanio = tamanio;
+        this.contentType = contentType;
+        this.version = version;
+        this.comprimido = comprimido;
+        this.tamanioAlmacenado = tamanioAlmacenado;
+    }
+
+    /**
+     * Este objeto, tomado como versión comprimida de un original con el tamaño y tipo indicados.
+     */
+    public ArchivoAlmacenado comoComprimidoDe(long tamanioOriginal, String contentTypeOriginal) {
+        return new ArchivoAlmacenado(ruta, tamanioOriginal, contentTypeOriginal, version, true, tamanio);
+    }
+
+    public String getRuta() { return ruta; }
+    public long getTamanio() { return tamanio; }
+    public String getContentType() { return contentType; }
+    public String getVersion() { return version; }
+    public boolean isComprimido() { return comprimido; }
+    public long getTamanioAlmacenado() { return tamanioAlmacenado; }
+}
@@ -0,0 +1,45 @@
+package com.registro.dto;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Criterios combinables de búsqueda en la auditoría. Los campos nulos o vacíos
+ * no filtran. Se enlaza directamente desde los parámetros de la petición.
+ */
+public class AuditLogFiltro {
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime desde;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime hasta;
+    private Set<String> acciones;
+    private String entityType;
+    private String entityId;
+    private String username;
+    private String ipAddress;
+
+    public LocalDateTime getDesde() { return desde; }
+    public void setDesde(LocalDateTime desde) { this.desde = desde; }
+
+    public LocalDateTime getHasta() { return hasta; }
+    public void setHasta(LocalDateTime hasta) { this.hasta = hasta; }
+
+    public Set<String> getAcciones() { return acciones; }
+    public void setAcciones(Set<String> acciones) { this.acciones = acciones; }
+
+    public String getEntityType() { return entityType; }
+    public void setEntityType(String entityType) { this.entityType = entityType; }
+
+    public String getEntityId() { return entityId; }
+    public void setEntityId(String entityId) { this.entityId = entityId; }
+
+    /** Prefijo del nombre de usuario (sin distinguir mayúsculas). */
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+
+    public String getIpAddress() { return ipAddress; }
+    public void setIpAddress(String ipAddress) { this.ipAddress = ipAddress; }
+}
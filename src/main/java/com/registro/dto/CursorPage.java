@@ -0,0 +1,43 @@
+package com.registro.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Página de resultados obtenida por clave (keyset), sin offset ni count.
+ * {@code nextCursor} es nulo cuando no hay más resultados.
+ */
+public class CursorPage<T> {
+
+    private final List<T> content;
+    private final String nextCursor;
+    private final int size;
+
+    public CursorPage(List<T> content, String nextCursor, int size) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.size = size;
+    }
+
+    /**
+     * Construye la página a partir de una consulta que pidió {@code size + 1} filas:
+     * la fila extra sólo indica que existe una página siguiente.
+     * Lanza IllegalArgumentException (400 en los endpoints) si {@code size} no es positivo.
+     */
+    public static <T> CursorPage<T> of(List<T> filas, int size, Function<T, String> cursorDe) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Tamaño de página inválido: " + size);
+        }
+        if (filas.size() <= size) {
+            return new CursorPage<>(filas, null, size);
+        }
+        List<T> content = filas.subList(0, size);
+        return new CursorPage<>(content, cursorDe.apply(content.get(size - 1)), size);
+    }
+
+    public List<T> getContent() { return content; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean isHasNext() { return nextCursor != null; }
+    public int getSize() { return size; }
+    public int getNumberOfElements() { return content.size(); }
+}
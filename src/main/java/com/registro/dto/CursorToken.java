@@ -0,0 +1,65 @@
+package com.registro.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Token opaco de continuación para paginación por clave (keyset).
+ * Codifica la clave de ordenamiento del último elemento devuelto y su id
+ * como desempate, en Base64 URL-safe.
+ */
+public final class CursorToken {
+
+    private static final char SEPARADOR = '|';
+
+    private final String clave;
+    private final long id;
+
+    private CursorToken(String clave, long id) {
+        this.clave = clave;
+        this.id = id;
+    }
+
+    public static String encode(Object clave, Long id) {
+        String raw = clave + String.valueOf(SEPARADOR) + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un token recibido del cliente.
+     * Lanza IllegalArgumentException si el token no es válido.
+     */
+    public static CursorToken decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int pos = raw.lastIndexOf(SEPARADOR);
+            if (pos <= 0) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            return new CursorToken(raw.substring(0, pos), Long.parseLong(raw.substring(pos + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + token, e);
+        }
+    }
+
+    public long getId() { return id; }
+
+    public LocalDate getClaveComoFecha() {
+        try {
+            return LocalDate.parse(clave);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + clave, e);
+        }
+    }
+
+    public LocalDateTime getClaveComoFechaHora() {
+        try {
+            return LocalDateTime.parse(clave);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + clave, e);
+        }
+    }
+}
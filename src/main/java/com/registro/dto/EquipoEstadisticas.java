@@ -0,0 +1,63 @@
+package com.registro.dto;
+
+import com.registro.model.EquipoInformatico;
+import com.registro.model.Site;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contadores de equipos calculados en la base de datos con una única consulta agrupada
+ * por site y estado. Sirve a las páginas de gestión, dashboard y estado de equipos.
+ */
+public class EquipoEstadisticas {
+
+    private long totalEquipos;
+    private long equiposActivos;
+    private long equiposAsignados;
+    private long equiposDadosDeBaja;
+    private final Map<EquipoInformatico.EstadoEquipo, Long> conteoPorEstado =
+            new EnumMap<>(EquipoInformatico.EstadoEquipo.class);
+    private final Map<String, Map<String, Long>> conteoPorSite = new LinkedHashMap<>();
+    private final List<Site> sites = new ArrayList<>();
+
+    /**
+     * Acumula una fila de la proyección (site, estado) en los contadores.
+     */
+    public void acumular(Site site, EquipoInformatico.EstadoEquipo estado, long total, long activos, long asignados) {
+        totalEquipos += total;
+        equiposActivos += activos;
+        equiposAsignados += asignados;
+
+        if (estado != null) {
+            conteoPorEstado.merge(estado, total, Long::sum);
+            if (estado == EquipoInformatico.EstadoEquipo.DADO_DE_BAJA) {
+                equiposDadosDeBaja += total;
+            }
+        }
+
+        if (site != null) {
+            if (!sites.contains(site)) {
+                sites.add(site);
+            }
+            if (estado != null) {
+                conteoPorSite.computeIfAbsent(site.getLabel(), k -> new LinkedHashMap<>())
+                        .merge(estado.name(), total, Long::sum);
+            }
+        }
+    }
+
+    // Getters
+    public long getTotalEquipos() { return totalEquipos; }
+    public long getEquiposActivos() { return equiposActivos; }
+    public long getEquiposAsignados() { return equiposAsignados; }
+    public long getEquiposDisponibles() { return totalEquipos - equiposAsignados; }
+    public long getEquiposDadosDeBaja() { return equiposDadosDeBaja; }
+    public Map<EquipoInformatico.EstadoEquipo, Long> getConteoPorEstado() { return Collections.unmodifiableMap(conteoPorEstado); }
+    public Map<String, Map<String, Long>> getConteoPorSite() { return Collections.unmodifiableMap(conteoPorSite); }
+    public List<Site> getSites() { return Collections.unmodifiableList(sites); }
+}
@@ -0,0 +1,124 @@
+package com.registro.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estado de un trabajo de generación de reporte en segundo plano.
+ * El artefacto se escribe en un archivo temporal y se descarga una vez completado.
+ */
+public class ReportJob {
+
+    public enum Estado {
+        PENDIENTE, EN_PROCESO, COMPLETADO, ERROR
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String clave;
+    private final String nombreArchivo;
+    private final String contentType;
+    private final LocalDateTime creado = LocalDateTime.now();
+    private final AtomicLong bytesEscritos = new AtomicLong();
+    /** Usuarios que pidieron el reporte; los pedidos iguales comparten el trabajo. */
+    private final Set<String> solicitantes = ConcurrentHashMap.newKeySet();
+
+    private volatile Estado estado = Estado.PENDIENTE;
+    private volatile LocalDateTime iniciado;
+    private volatile LocalDateTime finalizado;
+    private volatile String error;
+    private volatile Path archivo;
+
+    public ReportJob(String clave, String nombreArchivo, String contentType) {
+        this.clave = clave;
+        this.nombreArchivo = nombreArchivo;
+        this.contentType = contentType;
+    }
+
+    public void iniciar(Path archivo) {
+        this.archivo = archivo;
+        this.iniciado = LocalDateTime.now();
+        this.estado = Estado.EN_PROCESO;
+    }
+
+    public void completar() {
+        this.finalizado = LocalDateTime.now();
+        this.estado = Estado.COMPLETADO;
+    }
+
+    public void fallar(String error) {
+        this.error = error;
+        this.finalizado = LocalDateTime.now();
+        this.estado = Estado.ERROR;
+    }
+
+    public void agregarSolicitante(String username) {
+        solicitantes.add(username);
+    }
+
+    public boolean esSolicitante(String username) {
+        return username != null && solicitantes.contains(username);
+    }
+
+    public void sumarBytes(long cantidad) {
+        bytesEscritos.addAndGet(cantidad);
+    }
+
+    /**
+     * Indica si el trabajo todavía no terminó (pendiente o en proceso).
+     */
+    @JsonIgnore
+    public boolean isEnCurso() {
+        return estado == Estado.PENDIENTE || estado == Estado.EN_PROCESO;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getClave() {
+        return clave;
+    }
+
+    public String getNombreArchivo() {
+        return nombreArchivo;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+
+    public long getBytesEscritos() {
+        return bytesEscritos.get();
+    }
+
+    public LocalDateTime getCreado() {
+        return creado;
+    }
+
+    public LocalDateTime getIniciado() {
+        return iniciado;
+    }
+
+    public LocalDateTime getFinalizado() {
+        return finalizado;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @JsonIgnore
+    public Path getArchivo() {
+        return archivo;
+    }
+}
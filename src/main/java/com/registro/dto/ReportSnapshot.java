@@ -0,0 +1,116 @@
+package com.registro.dto;
+
+import com.registro.model.EquipoInformatico;
+import com.registro.model.Site;
+import com.registro.model.Usuario;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Foto de usuarios y equipos leída una sola vez para generar un reporte.
+ * Los índices (por site, por usuario y por marca/modelo) se arman en una
+ * pasada, de modo que cada hoja del reporte los consulta sin volver a
+ * recorrer ni filtrar las listas completas.
+ */
+public class ReportSnapshot {
+
+    private static final Comparator<Usuario> POR_LEGAJO =
+            Comparator.comparing(Usuario::getLegajo, Comparator.nullsLast(Comparator.naturalOrder()));
+    private static final Comparator<EquipoInformatico> POR_TIPO =
+            Comparator.comparing(e -> e.getTipo() != null ? e.getTipo().toString() : "");
+
+    private final long totalUsuarios;
+    private final long totalEquipos;
+    private final Map<Site, List<Usuario>> usuariosPorSite = new EnumMap<>(Site.class);
+    private final Map<Site, List<EquipoInformatico>> equiposPorSite = new EnumMap<>(Site.class);
+    private final Map<Long, List<EquipoInformatico>> equiposPorUsuario = new HashMap<>();
+    private final Map<String, Map<String, List<EquipoInformatico>>> equiposPorMarcaModelo = new TreeMap<>();
+
+    /**
+     * @param usuarios todos los usuarios
+     * @param equipos  todos los equipos, con su usuario ya cargado (fetch join)
+     */
+    public ReportSnapshot(List<Usuario> usuarios, List<EquipoInformatico> equipos) {
+        this.totalUsuarios = usuarios.size();
+        this.totalEquipos = equipos.size();
+
+        for (Usuario usuario : usuarios) {
+            if (usuario.getSite() != null) {
+                usuariosPorSite.computeIfAbsent(usuario.getSite(), k -> new ArrayList<>()).add(usuario);
+            }
+        }
+        usuariosPorSite.values().forEach(lista -> lista.sort(POR_LEGAJO));
+
+        for (EquipoInformatico equipo : equipos) {
+            Usuario usuario = equipo.getUsuario();
+            if (usuario != null) {
+                equiposPorUsuario.computeIfAbsent(usuario.getId(), k -> new ArrayList<>()).add(equipo);
+                if (usuario.getSite() != null) {
+                    equiposPorSite.computeIfAbsent(usuario.getSite(), k -> new ArrayList<>()).add(equipo);
+                }
+            }
+            if (equipo.getMarca() != null && equipo.getModelo() != null) {
+                equiposPorMarcaModelo.computeIfAbsent(equipo.getMarca(), k -> new TreeMap<>())
+                        .computeIfAbsent(equipo.getModelo(), k -> new ArrayList<>())
+                        .add(equipo);
+            }
+        }
+        equiposPorUsuario.values().forEach(lista -> lista.sort(POR_TIPO));
+    }
+
+    public long getTotalUsuarios() {
+        return totalUsuarios;
+    }
+
+    public long getTotalEquipos() {
+        return totalEquipos;
+    }
+
+    public long getUsuariosConEquipos() {
+        return equiposPorUsuario.size();
+    }
+
+    /**
+     * Usuarios del site ordenados por legajo.
+     */
+    public List<Usuario> getUsuarios(Site site) {
+        return usuariosPorSite.getOrDefault(site, Collections.emptyList());
+    }
+
+    /**
+     * Equipos asignados a usuarios del site.
+     */
+    public List<EquipoInformatico> getEquipos(Site site) {
+        return equiposPorSite.getOrDefault(site, Collections.emptyList());
+    }
+
+    /**
+     * Equipos del usuario ordenados por tipo.
+     */
+    public List<EquipoInformatico> getEquipos(Usuario usuario) {
+        return equiposPorUsuario.getOrDefault(usuario.getId(), Collections.emptyList());
+    }
+
+    /**
+     * Cantidad de usuarios del site que tienen al menos un equipo.
+     */
+    public long getUsuariosConEquipos(Site site) {
+        return getUsuarios(site).stream()
+                .filter(usuario -> equiposPorUsuario.containsKey(usuario.getId()))
+                .count();
+    }
+
+    /**
+     * Equipos agrupados por marca y modelo, en orden alfabético.
+     */
+    public Map<String, Map<String, List<EquipoInformatico>>> getEquiposPorMarcaModelo() {
+        return equiposPorMarcaModelo;
+    }
+}
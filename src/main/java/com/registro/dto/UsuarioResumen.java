@@ -0,0 +1,55 @@
+package com.registro.dto;
+
+import com.registro.model.Site;
+
+/**
+ * Fila de lectura de un usuario con la cantidad de equipos y archivos que tiene,
+ * calculadas con subconsultas COUNT en la misma sentencia (sin cargar colecciones).
+ */
+public class UsuarioResumen {
+
+    private final Long id;
+    private final String legajo;
+    private final String nombre;
+    private final String apellido;
+    private final String correoElectronico;
+    private final String telefono;
+    private final Site site;
+    private final long cantidadEquipos;
+    private final long cantidadArchivos;
+
+    public UsuarioResumen(Long id, String legajo, String nombre, String apellido,
+                          String correoElectronico, String telefono, Site site,
+                          Long cantidadEquipos, Long cantidadArchivos) {
+        this.id = id;
+        this.legajo = legajo;
+        this.nombre = nombre;
+        this.apellido = apellido;
+        this.correoElectronico = correoElectronico;
+        this.telefono = telefono;
+        this.site = site;
+        this.cantidadEquipos = cantidadEquipos != null ? cantidadEquipos : 0L;
+        this.cantidadArchivos = cantidadArchivos != null ? cantidadArchivos : 0L;
+    }
+
+    public Long getId() { return id; }
+
+    public String getLegajo() { return legajo; }
+
+    public String getNombre() { return nombre; }
+
+    public String getApellido() { return apellido; }
+
+    public String getCorreoElectronico() { return correoElectronico; }
+
+    public String getTelefono() { return telefono; }
+
+    public Site getSite() { return site; }
+
+    /** Etiqueta legible del site, para las vistas que arman la fila en el navegador. */
+    public String getSiteLabel() { return site != null ? site.getLabel() : null; }
+
+    public long getCantidadEquipos() { return cantidadEquipos; }
+
+    public long getCantidadArchivos() { return cantidadArchivos; }
+}
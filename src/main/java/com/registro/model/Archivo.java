@@ -2,8 +2,10 @@
 package com.registro.model;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.ConstraintMode;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
+import jakarta.persistence.ForeignKey;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -29,6 +31,16 @@ public class Archivo {
     @Column(nullable = false)
     private String path;
 
+    /** SHA-256 del contenido; null en archivos subidos antes de deduplicar */
+    @Column(length = 64)
+    private String hash;
+
+    /** Objeto compartido del contenido, para mostrar su miniatura en los listados */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "hash", insertable = false, updatable = false,
+                foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    private ObjetoAlmacenado objeto;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "usuario_legajo", referencedColumnName = "legajo", nullable = false)
     private Usuario usuario;
@@ -50,6 +62,9 @@ public class Archivo {
     public void setUrl(String u) { url = u; }
     public String getPath() { return path; }
     public void setPath(String p) { path = p; }
+    public String getHash() { return hash; }
+    public void setHash(String h) { hash = h; }
+    public ObjetoAlmacenado getObjeto() { return objeto; }
     public Usuario getUsuario() { return usuario; }
     public void setUsuario(Usuario u) { usuario = u; }
 }
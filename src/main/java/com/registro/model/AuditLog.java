@@ -8,7 +8,11 @@ import java.time.LocalDateTime;
     @Index(name = "idx_audit_logs_username", columnList = "username"),
     @Index(name = "idx_audit_logs_action", columnList = "action"),
     @Index(name = "idx_audit_logs_timestamp", columnList = "timestamp"),
-    @Index(name = "idx_audit_logs_entity_type", columnList = "entityType")
+    @Index(name = "idx_audit_logs_timestamp_id", columnList = "timestamp, id"),
+    @Index(name = "idx_audit_logs_entity_type", columnList = "entityType"),
+    @Index(name = "idx_audit_logs_timestamp_action", columnList = "timestamp, action"),
+    @Index(name = "idx_audit_logs_entity_timestamp", columnList = "entityType, entityId, timestamp"),
+    @Index(name = "idx_audit_logs_ip_timestamp", columnList = "ipAddress, timestamp")
 })
 public class AuditLog {
 
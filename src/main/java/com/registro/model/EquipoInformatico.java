@@ -6,7 +6,10 @@ import jakarta.persistence.*;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "equipos_informaticos")
+@Table(name = "equipos_informaticos", indexes = {
+    @Index(name = "idx_equipos_site_estado", columnList = "site, estado"),
+    @Index(name = "idx_equipos_fecha_registro_id", columnList = "fecha_registro, id")
+})
 public class EquipoInformatico {
 
     @Id
@@ -0,0 +1,69 @@
+package com.registro.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Objeto del almacenamiento identificado por el SHA-256 de su contenido. Varios
+ * {@link Archivo} pueden apuntar al mismo objeto; {@code referencias} cuenta
+ * cuántos. Los objetos sin referencias los borra la limpieza periódica de
+ * {@code ArchivoService} pasado un período de gracia.
+ * <p>
+ * Después de la subida, un procesamiento en segundo plano puede generar una
+ * miniatura y una versión comprimida, que reemplaza al original en las descargas.
+ */
+@Entity
+@Table(name = "objetos_almacenados")
+public class ObjetoAlmacenado {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false)
+    private String ruta;
+
+    @Column(nullable = false)
+    private long tamanio;
+
+    @Column(nullable = false)
+    private int referencias;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    /** Ruta de la versión comprimida con deflate; null si se sirve el original. */
+    @Column(name = "ruta_comprimida")
+    private String rutaComprimida;
+
+    /** Original ya reemplazado por la versión comprimida, pendiente de borrar. */
+    @Column(name = "ruta_descartada")
+    private String rutaDescartada;
+
+    /** Ruta de la miniatura JPEG; null si el tipo no tiene vista previa. */
+    private String miniatura;
+
+    /** Momento en que terminó el procesamiento posterior a la subida. */
+    private LocalDateTime procesado;
+
+    /** Última vez que se subió, reutilizó o liberó; marca el inicio de la gracia. */
+    @Column(nullable = false)
+    private LocalDateTime actualizado;
+
+    public ObjetoAlmacenado() {}
+
+    public String getHash() { return hash; }
+    public String getRuta() { return ruta; }
+    public long getTamanio() { return tamanio; }
+    public int getReferencias() { return referencias; }
+    public String getContentType() { return contentType; }
+    public String getRutaComprimida() { return rutaComprimida; }
+    public String getRutaDescartada() { return rutaDescartada; }
+    public String getMiniatura() { return miniatura; }
+    public LocalDateTime getProcesado() { return procesado; }
+    public LocalDateTime getActualizado() { return actualizado; }
+}
@@ -1,41 +1,82 @@
 package com.registro.repository;
 
 import com.registro.model.AuditLog;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
+public interface AuditLogRepository extends JpaRepository<AuditLog, Long>, JpaSpecificationExecutor<AuditLog> {
+
+    // Todas las consultas del listado reciben una cota inferior de timestamp ("desde")
+    // para que PostgreSQL lea sólo las particiones mensuales necesarias
+
+    // Todas las actividades desde una fecha
+    Page<AuditLog> findByTimestampGreaterThanEqual(LocalDateTime desde, Pageable pageable);
 
     // Buscar por nombre de usuario
-    Page<AuditLog> findByUsernameContainingIgnoreCase(String username, Pageable pageable);
+    Page<AuditLog> findByUsernameContainingIgnoreCaseAndTimestampGreaterThanEqual(String username, LocalDateTime desde,
+                                                                                  Pageable pageable);
 
     // Buscar solo actividades críticas
-    @Query("SELECT a FROM AuditLog a WHERE a.action IN ('CREAR', 'EDITAR', 'ELIMINAR')")
-    Page<AuditLog> findCriticalActivities(Pageable pageable);
+    @Query("SELECT a FROM AuditLog a WHERE a.action IN ('CREAR', 'EDITAR', 'ELIMINAR') AND a.timestamp >= :desde")
+    Page<AuditLog> findCriticalActivities(@Param("desde") LocalDateTime desde, Pageable pageable);
 
     // Buscar por tipo de entidad
-    Page<AuditLog> findByEntityType(String entityType, Pageable pageable);
+    Page<AuditLog> findByEntityTypeAndTimestampGreaterThanEqual(String entityType, LocalDateTime desde, Pageable pageable);
 
     // Buscar por acción
-    Page<AuditLog> findByAction(String action, Pageable pageable);
+    Page<AuditLog> findByActionAndTimestampGreaterThanEqual(String action, LocalDateTime desde, Pageable pageable);
 
     // Buscar actividades de un usuario específico
     Page<AuditLog> findByUsername(String username, Pageable pageable);
 
+    // Paginación por clave (timestamp, id): primera página
+    @Query("SELECT a FROM AuditLog a WHERE a.timestamp >= :desde ORDER BY a.timestamp DESC, a.id DESC")
+    List<AuditLog> findMasRecientes(@Param("desde") LocalDateTime desde, Pageable limite);
+
+    // Paginación por clave (timestamp, id): páginas siguientes al último registro entregado
+    @Query("SELECT a FROM AuditLog a WHERE a.timestamp >= :desde AND a.timestamp <= :timestamp " +
+           "AND (a.timestamp < :timestamp OR a.id < :id) " +
+           "ORDER BY a.timestamp DESC, a.id DESC")
+    List<AuditLog> findAnterioresA(@Param("desde") LocalDateTime desde, @Param("timestamp") LocalDateTime timestamp,
+                                   @Param("id") Long id, Pageable limite);
+
+    // Exportación: cursor de sólo avance en orden cronológico, de a 1000 filas por viaje.
+    // Debe consumirse dentro de una transacción; con todasLasAcciones = true se ignora acciones.
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT a FROM AuditLog a WHERE a.timestamp >= :desde AND a.timestamp < :hasta " +
+           "AND (:todasLasAcciones = true OR a.action IN :acciones) ORDER BY a.timestamp, a.id")
+    Stream<AuditLog> streamParaExportar(@Param("desde") LocalDateTime desde,
+                                        @Param("hasta") LocalDateTime hasta,
+                                        @Param("todasLasAcciones") boolean todasLasAcciones,
+                                        @Param("acciones") Collection<String> acciones);
+
     // Contar total de actividades por usuario
     @Query("SELECT COUNT(a) FROM AuditLog a WHERE a.username = :username")
     Long countByUsername(@Param("username") String username);
 
+    // Contar actividades desde una fecha
+    long countByTimestampGreaterThanEqual(LocalDateTime desde);
+
     // Contar actividades críticas
-    @Query("SELECT COUNT(a) FROM AuditLog a WHERE a.action IN ('CREAR', 'EDITAR', 'ELIMINAR')")
-    Long countCriticalActivities();
+    @Query("SELECT COUNT(a) FROM AuditLog a WHERE a.action IN ('CREAR', 'EDITAR', 'ELIMINAR') AND a.timestamp >= :desde")
+    Long countCriticalActivities(@Param("desde") LocalDateTime desde);
 
     // Contar logins fallidos desde una fecha
     @Query("SELECT COUNT(l) FROM AuditLog l WHERE l.action = 'LOGIN_FALLIDO' AND l.timestamp >= :since")
@@ -0,0 +1,128 @@
+package com.registro.repository;
+
+import com.registro.dto.AuditLogFiltro;
+import com.registro.model.AuditLog;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Predicados componibles para buscar en la auditoría. Cada filtro nulo o vacío
+ * se ignora. Todas las búsquedas llevan un rango de timestamp, de modo que
+ * PostgreSQL sólo lee las particiones mensuales involucradas.
+ */
+public final class AuditLogSpecifications {
+
+    /** Acciones consideradas críticas. */
+    public static final Set<String> ACCIONES_CRITICAS = Set.of("CREAR", "EDITAR", "ELIMINAR");
+
+    /** Carácter de escape de los patrones LIKE. */
+    private static final char ESCAPE_LIKE = '\\';
+
+    private AuditLogSpecifications() {}
+
+    /**
+     * Combina todos los criterios del filtro.
+     */
+    public static Specification<AuditLog> conFiltro(AuditLogFiltro filtro) {
+        return Specification.allOf(
+                entre(filtro.getDesde(), filtro.getHasta()),
+                conAcciones(filtro.getAcciones()),
+                conEntidad(filtro.getEntityType(), filtro.getEntityId()),
+                conUsernamePrefijo(filtro.getUsername()),
+                conIp(filtro.getIpAddress()));
+    }
+
+    public static Specification<AuditLog> entre(LocalDateTime desde, LocalDateTime hasta) {
+        return (root, query, cb) -> {
+            if (desde == null && hasta == null) {
+                return null;
+            }
+            if (desde == null) {
+                return cb.lessThan(root.get("timestamp"), hasta);
+            }
+            if (hasta == null) {
+                return cb.greaterThanOrEqualTo(root.get("timestamp"), desde);
+            }
+            return cb.and(cb.greaterThanOrEqualTo(root.get("timestamp"), desde),
+                          cb.lessThan(root.get("timestamp"), hasta));
+        };
+    }
+
+    public static Specification<AuditLog> conAcciones(Set<String> acciones) {
+        return (root, query, cb) -> acciones == null || acciones.isEmpty() ? null : root.get("action").in(acciones);
+    }
+
+    public static Specification<AuditLog> conEntidad(String entityType, String entityId) {
+        return (root, query, cb) -> {
+            if (vacio(entityType) && vacio(entityId)) {
+                return null;
+            }
+            if (vacio(entityId)) {
+                return cb.equal(root.get("entityType"), entityType.trim());
+            }
+            if (vacio(entityType)) {
+                return cb.equal(root.get("entityId"), entityId.trim());
+            }
+            return cb.and(cb.equal(root.get("entityType"), entityType.trim()),
+                          cb.equal(root.get("entityId"), entityId.trim()));
+        };
+    }
+
+    /**
+     * Prefijo de usuario sin distinguir mayúsculas; usa el índice sobre lower(username).
+     * Los comodines que escribe el usuario se buscan literalmente.
+     */
+    public static Specification<AuditLog> conUsernamePrefijo(String prefijo) {
+        return (root, query, cb) -> {
+            if (vacio(prefijo)) {
+                return null;
+            }
+            String patron = escaparLike(prefijo.trim().toLowerCase()) + "%";
+            return cb.like(cb.lower(root.get("username")), patron, ESCAPE_LIKE);
+        };
+    }
+
+    /**
+     * Usuario que contiene el texto, sin distinguir mayúsculas. Como en
+     * {@link #conUsernamePrefijo}, los comodines se buscan literalmente.
+     */
+    public static Specification<AuditLog> conUsernameQueContiene(String texto) {
+        return (root, query, cb) -> {
+            if (vacio(texto)) {
+                return null;
+            }
+            String patron = "%" + escaparLike(texto.trim().toLowerCase()) + "%";
+            return cb.like(cb.lower(root.get("username")), patron, ESCAPE_LIKE);
+        };
+    }
+
+    public static Specification<AuditLog> conIp(String ipAddress) {
+        return (root, query, cb) -> vacio(ipAddress) ? null : cb.equal(root.get("ipAddress"), ipAddress.trim());
+    }
+
+    /**
+     * Condición de keyset para el orden (timestamp DESC, id DESC). La cota superior
+     * explícita sobre timestamp permite descartar las particiones más nuevas.
+     */
+    public static Specification<AuditLog> anteriorA(LocalDateTime timestamp, Long id) {
+        return (root, query, cb) -> {
+            if (timestamp == null || id == null) {
+                return null;
+            }
+            return cb.and(
+                    cb.lessThanOrEqualTo(root.get("timestamp"), timestamp),
+                    cb.or(cb.lessThan(root.get("timestamp"), timestamp),
+                          cb.lessThan(root.get("id"), id)));
+        };
+    }
+
+    private static String escaparLike(String valor) {
+        return valor.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static boolean vacio(String valor) {
+        return valor == null || valor.trim().isEmpty();
+    }
+}
@@ -0,0 +1,99 @@
+// src/main/java/com/registro/repository/EquipoInformaticoSpecifications.java
+package com.registro.repository;
+
+import com.registro.model.EquipoInformatico;
+import com.registro.model.Site;
+import com.registro.model.Usuario;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+
+/**
+ * Predicados componibles para filtrar equipos informáticos.
+ * Cada filtro nulo o vacío se ignora, de modo que la consulta (y su count) sólo
+ * incluye las condiciones realmente seleccionadas.
+ */
+public final class EquipoInformaticoSpecifications {
+
+    private EquipoInformaticoSpecifications() {}
+
+    /**
+     * Combina todos los filtros de la pantalla de gestión.
+     */
+    public static Specification<EquipoInformatico> conFiltros(String buscar, Site site,
+                                                            EquipoInformatico.EstadoEquipo estado,
+                                                            Boolean activo) {
+        return Specification.allOf(
+                conSite(site),
+                conEstado(estado),
+                conActivo(activo),
+                contieneTexto(buscar));
+    }
+
+    public static Specification<EquipoInformatico> conSite(Site site) {
+        return (root, query, cb) -> site == null ? null : cb.equal(root.get("site"), site);
+    }
+
+    public static Specification<EquipoInformatico> conEstado(EquipoInformatico.EstadoEquipo estado) {
+        return (root, query, cb) -> estado == null ? null : cb.equal(root.get("estado"), estado);
+    }
+
+    public static Specification<EquipoInformatico> conTipo(EquipoInformatico.TipoEquipo tipo) {
+        return (root, query, cb) -> tipo == null ? null : cb.equal(root.get("tipo"), tipo);
+    }
+
+    /**
+     * Condición de keyset para el orden (fechaRegistro DESC, id DESC):
+     * devuelve sólo los equipos posteriores al último elemento ya entregado.
+     */
+    public static Specification<EquipoInformatico> anteriorA(LocalDate fechaRegistro, Long id) {
+        return (root, query, cb) -> {
+            if (fechaRegistro == null || id == null) {
+                return null;
+            }
+            return cb.or(
+                    cb.lessThan(root.get("fechaRegistro"), fechaRegistro),
+                    cb.and(cb.equal(root.get("fechaRegistro"), fechaRegistro),
+                           cb.lessThan(root.get("id"), id)));
+        };
+    }
+
+    /**
+     * {@code true}: sólo equipos con usuario asignado; {@code false}: sólo disponibles.
+     */
+    public static Specification<EquipoInformatico> conAsignacion(Boolean asignado) {
+        return (root, query, cb) -> {
+            if (asignado == null) {
+                return null;
+            }
+            return asignado ? cb.isNotNull(root.get("usuario")) : cb.isNull(root.get("usuario"));
+        };
+    }
+
+    public static Specification<EquipoInformatico> conActivo(Boolean activo) {
+        return (root, query, cb) -> activo == null ? null : cb.equal(root.get("activo"), activo);
+    }
+
+    /**
+     * Búsqueda de texto en los datos del equipo y del usuario asignado.
+     */
+    public static Specification<EquipoInformatico> contieneTexto(String termino) {
+        return (root, query, cb) -> {
+            if (termino == null || termino.trim().isEmpty()) {
+                return null;
+            }
+            String patron = "%" + termino.trim().toLowerCase() + "%";
+            Join<EquipoInformatico, Usuario> usuario = root.join("usuario", JoinType.LEFT);
+            return cb.or(
+                    cb.like(cb.lower(root.get("marca")), patron),
+                    cb.like(cb.lower(root.get("modelo")), patron),
+                    cb.like(cb.lower(root.get("numeroSerie")), patron),
+                    cb.like(cb.lower(root.get("numeroInventario")), patron),
+                    cb.like(cb.lower(usuario.get("nombre")), patron),
+                    cb.like(cb.lower(usuario.get("apellido")), patron),
+                    cb.like(cb.lower(usuario.get("legajo")), patron));
+        };
+    }
+}
@@ -2,22 +2,106 @@
 package com.registro.repository;
 
 import com.registro.model.EquipoInformatico;
+import com.registro.model.Site;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface IEquipoInformaticoRepository extends JpaRepository<EquipoInformatico, Long> {
+public interface IEquipoInformaticoRepository extends JpaRepository<EquipoInformatico, Long>,
+        JpaSpecificationExecutor<EquipoInformatico> {
     
     List<EquipoInformatico> findByUsuarioLegajo(String legajo);
     
     void deleteByUsuarioLegajo(String legajo);
 
+    /**
+     * Conteo agrupado por site y estado, con activos y asignados de cada grupo.
+     * Reemplaza las cargas completas de la tabla para calcular estadísticas.
+     */
+    @Query("SELECT e.site AS site, e.estado AS estado, COUNT(e) AS total, " +
+            "SUM(CASE WHEN e.activo = true THEN 1 ELSE 0 END) AS activos, " +
+            "SUM(CASE WHEN e.usuario IS NOT NULL THEN 1 ELSE 0 END) AS asignados " +
+            "FROM EquipoInformatico e GROUP BY e.site, e.estado ORDER BY e.site, e.estado")
+    List<ConteoSiteEstado> contarPorSiteYEstado();
+
+    boolean existsByNumeroSerie(String numeroSerie);
+
+    @Query("SELECT e.numeroSerie FROM EquipoInformatico e WHERE e.numeroSerie IS NOT NULL")
+    List<String> findAllNumerosSerie();
+
+    @Query("SELECT e FROM EquipoInformatico e WHERE e.usuario.id IN :usuarioIds ORDER BY e.tipo")
+    List<EquipoInformatico> findByUsuarioIds(@Param("usuarioIds") Collection<Long> usuarioIds);
+
+    @Query("SELECT COUNT(DISTINCT e.usuario.id) FROM EquipoInformatico e WHERE e.usuario IS NOT NULL")
+    long countUsuariosConEquipos();
+
+    @Query("SELECT COUNT(e) FROM EquipoInformatico e WHERE e.usuario.site = :site")
+    long countByUsuarioSite(@Param("site") Site site);
+
+    @Query("SELECT COUNT(DISTINCT e.usuario.id) FROM EquipoInformatico e WHERE e.usuario.site = :site")
+    long countUsuariosConEquiposBySite(@Param("site") Site site);
+
+    /**
+     * Conteo agrupado por site, tipo y estado para el dashboard ejecutivo exportable.
+     */
+    @Query("SELECT e.site AS site, e.tipo AS tipo, e.estado AS estado, COUNT(e) AS total, " +
+            "SUM(CASE WHEN e.activo = true THEN 1 ELSE 0 END) AS activos, " +
+            "SUM(CASE WHEN e.usuario IS NOT NULL THEN 1 ELSE 0 END) AS asignados " +
+            "FROM EquipoInformatico e GROUP BY e.site, e.tipo, e.estado ORDER BY e.site, e.tipo")
+    List<ConteoSiteTipo> contarPorSiteYTipo();
+
+    /**
+     * Todos los equipos con su usuario cargado en la misma consulta.
+     */
+    @Query("SELECT e FROM EquipoInformatico e LEFT JOIN FETCH e.usuario")
+    List<EquipoInformatico> findAllConUsuario();
+
+    /**
+     * Conteo de equipos agrupado por site del usuario asignado (null si no está asignado),
+     * tipo, estado y marca. Alimenta la página de estadísticas.
+     */
+    @Query("SELECT u.site AS site, e.tipo AS tipo, e.estado AS estado, e.marca AS marca, COUNT(e) AS total " +
+            "FROM EquipoInformatico e LEFT JOIN e.usuario u GROUP BY u.site, e.tipo, e.estado, e.marca")
+    List<ConteoSiteTipoMarca> contarPorSiteTipoYMarca();
+
+    long countByActivoTrue();
+
+    long countByUsuarioIsNotNull();
+
+    long countByUsuarioIsNull();
+
+    long countByEstado(EquipoInformatico.EstadoEquipo estado);
+
+    /**
+     * Ramas de {@link #buscarPorSimilitud}: id y relevancia de cada equipo que coincide.
+     */
+    String COINCIDENCIAS_SIMILITUD =
+            "SELECT e.id, GREATEST(similarity(lower(e.numero_serie), :term), " +
+            "similarity(lower(e.numero_inventario), :term), similarity(lower(e.marca), :term), " +
+            "similarity(lower(e.modelo), :term)) AS rango " +
+            "FROM equipos_informaticos e WHERE " +
+            "(lower(e.marca) LIKE CONCAT('%', :term, '%') OR " +
+            "lower(e.modelo) LIKE CONCAT('%', :term, '%') OR " +
+            "lower(e.numero_serie) LIKE CONCAT('%', :term, '%') OR " +
+            "lower(e.numero_inventario) LIKE CONCAT('%', :term, '%')) AND " +
+            "(CAST(:filtroTipo AS varchar) IS NULL OR e.tipo = CAST(:filtroTipo AS varchar)) " +
+            "UNION ALL " +
+            "SELECT e.id, GREATEST(similarity(lower(u.legajo), :term), " +
+            "similarity(lower(u.nombre), :term), similarity(lower(u.apellido), :term)) AS rango " +
+            "FROM usuarios u JOIN equipos_informaticos e ON e.usuario_legajo = u.legajo WHERE " +
+            "(lower(u.nombre) LIKE CONCAT('%', :term, '%') OR " +
+            "lower(u.apellido) LIKE CONCAT('%', :term, '%') OR " +
+            "lower(u.legajo) LIKE CONCAT('%', :term, '%')) AND " +
+            "(CAST(:filtroTipo AS varchar) IS NULL OR e.tipo = CAST(:filtroTipo AS varchar))";
+
     @Query(value = "SELECT e FROM EquipoInformatico e LEFT JOIN e.usuario u WHERE " +
             "(LOWER(e.marca) LIKE LOWER(CONCAT('%', :term, '%')) OR " +
             "LOWER(e.modelo) LIKE LOWER(CONCAT('%', :term, '%')) OR " +
@@ -37,4 +121,54 @@ public interface IEquipoInformaticoRepository extends JpaRepository<EquipoInform
             "LOWER(u.legajo) LIKE LOWER(CONCAT('%', :term, '%'))) AND " +
             "(:filtroTipo IS NULL OR e.tipo = :filtroTipo)")
     Page<EquipoInformatico> findBySearchTerm(@Param("term") String term, @Param("filtroTipo") EquipoInformatico.TipoEquipo filtroTipo, Pageable pageable);
-}
\ No newline at end of file
+
+    /**
+     * Búsqueda rankeada por similitud trigram (requiere la extensión pg_trgm de PostgreSQL
+     * y los índices GIN creados por SearchIndexInitializer). El término debe llegar en minúsculas.
+     * Es la unión de los equipos que coinciden por sus propias columnas y los equipos cuyo
+     * usuario coincide, para que cada rama use los índices trigram de su tabla: un OR entre
+     * columnas de las dos tablas del join obligaría a recorrerlas completas.
+     * El orden lo define la relevancia, por lo que el Pageable no debe traer Sort.
+     */
+    @Query(value = "WITH coincidencias AS (" + COINCIDENCIAS_SIMILITUD + "), " +
+            "rankeados AS (SELECT id, MAX(rango) AS rango FROM coincidencias GROUP BY id) " +
+            "SELECT e.* FROM rankeados r JOIN equipos_informaticos e ON e.id = r.id " +
+            "ORDER BY r.rango DESC, e.id DESC",
+            countQuery = "SELECT count(DISTINCT c.id) FROM (" + COINCIDENCIAS_SIMILITUD + ") c",
+            nativeQuery = true)
+    Page<EquipoInformatico> buscarPorSimilitud(@Param("term") String term, @Param("filtroTipo") String filtroTipo, Pageable pageable);
+
+    /**
+     * Proyección de una fila de {@link #contarPorSiteYTipo()}.
+     */
+    interface ConteoSiteTipo {
+        Site getSite();
+        EquipoInformatico.TipoEquipo getTipo();
+        EquipoInformatico.EstadoEquipo getEstado();
+        Long getTotal();
+        Long getActivos();
+        Long getAsignados();
+    }
+
+    /**
+     * Proyección de una fila de {@link #contarPorSiteTipoYMarca()}.
+     */
+    interface ConteoSiteTipoMarca {
+        Site getSite();
+        EquipoInformatico.TipoEquipo getTipo();
+        EquipoInformatico.EstadoEquipo getEstado();
+        String getMarca();
+        Long getTotal();
+    }
+
+    /**
+     * Proyección de una fila de {@link #contarPorSiteYEstado()}.
+     */
+    interface ConteoSiteEstado {
+        Site getSite();
+        EquipoInformatico.EstadoEquipo getEstado();
+        Long getTotal();
+        Long getActivos();
+        Long getAsignados();
+    }
+}
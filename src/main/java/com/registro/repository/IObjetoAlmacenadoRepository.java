@@ -0,0 +1,83 @@
+package com.registro.repository;
+
+import com.registro.model.ObjetoAlmacenado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface IObjetoAlmacenadoRepository extends JpaRepository<ObjetoAlmacenado, String> {
+
+    /**
+     * Renueva la marca de tiempo del objeto. Devuelve 0 si no existe; si existe,
+     * la limpieza no lo puede borrar durante el período de gracia.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE objetos_almacenados SET actualizado = now() WHERE hash = :hash", nativeQuery = true)
+    int tocar(@Param("hash") String hash);
+
+    /**
+     * Registra un objeto recién subido, todavía sin referencias.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO objetos_almacenados (hash, ruta, tamanio, referencias, content_type, actualizado) "
+            + "VALUES (:hash, :ruta, :tamanio, 0, :contentType, now()) "
+            + "ON CONFLICT (hash) DO UPDATE SET actualizado = now()", nativeQuery = true)
+    void registrar(@Param("hash") String hash, @Param("ruta") String ruta, @Param("tamanio") long tamanio,
+                   @Param("contentType") String contentType);
+
+    @Modifying
+    @Query(value = "UPDATE objetos_almacenados SET referencias = referencias + :delta, actualizado = now() "
+            + "WHERE hash = :hash", nativeQuery = true)
+    int sumarReferencias(@Param("hash") String hash, @Param("delta") int delta);
+
+    /**
+     * Registra el resultado del procesamiento. Si hubo versión comprimida, el
+     * original queda pendiente de borrar. Devuelve 0 si el objeto ya no existe o
+     * ya estaba procesado.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE objetos_almacenados SET procesado = now(), miniatura = :miniatura, "
+            + "ruta_comprimida = :rutaComprimida, "
+            + "ruta_descartada = CASE WHEN CAST(:rutaComprimida AS varchar) IS NULL THEN NULL ELSE ruta END "
+            + "WHERE hash = :hash AND procesado IS NULL", nativeQuery = true)
+    int marcarProcesado(@Param("hash") String hash, @Param("miniatura") String miniatura,
+                        @Param("rutaComprimida") String rutaComprimida);
+
+    /**
+     * Objetos referenciados que todavía no pasaron por el procesamiento.
+     */
+    @Query(value = "SELECT hash FROM objetos_almacenados WHERE procesado IS NULL AND referencias > 0 "
+            + "LIMIT :limite", nativeQuery = true)
+    List<String> findPendientesDeProcesar(@Param("limite") int limite);
+
+    @Modifying
+    @Query(value = "UPDATE objetos_almacenados SET ruta_descartada = NULL WHERE hash = :hash", nativeQuery = true)
+    void olvidarDescartada(@Param("hash") String hash);
+
+    /**
+     * Bloquea objetos cuyo original fue reemplazado por la versión comprimida hace
+     * más que la gracia, para que ninguna descarga en curso lo esté leyendo.
+     */
+    @Query(value = "SELECT * FROM objetos_almacenados WHERE ruta_descartada IS NOT NULL "
+            + "AND procesado < now() - make_interval(mins => :graciaMinutos) "
+            + "LIMIT :limite FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<ObjetoAlmacenado> bloquearConOriginalDescartado(@Param("graciaMinutos") int graciaMinutos,
+                                                        @Param("limite") int limite);
+
+    /**
+     * Bloquea objetos sin referencias cuya gracia ya venció. Los que otra
+     * transacción tiene tomados se saltean.
+     */
+    @Query(value = "SELECT * FROM objetos_almacenados WHERE referencias <= 0 "
+            + "AND actualizado < now() - make_interval(mins => :graciaMinutos) "
+            + "LIMIT :limite FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<ObjetoAlmacenado> bloquearSinReferencias(@Param("graciaMinutos") int graciaMinutos,
+                                                  @Param("limite") int limite);
+}
@@ -1,8 +1,16 @@
 // src/main/java/com/registro/repository/IUsuarioRepository.java
 package com.registro.repository;
 
+import com.registro.dto.UsuarioResumen;
+import com.registro.model.Site;
 import com.registro.model.Usuario;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.List;
 import java.util.Optional;
 
 public interface IUsuarioRepository extends JpaRepository<Usuario, Long> {
@@ -10,4 +18,78 @@ public interface IUsuarioRepository extends JpaRepository<Usuario, Long> {
      * Busca un usuario por su legajo (clave de negocio).
      */
     Optional<Usuario> findByLegajo(String legajo);
+
+    /**
+     * Usuario por legajo con sus equipos y archivos cargados en la misma consulta.
+     */
+    @EntityGraph(attributePaths = {"equiposInformaticos", "archivos"})
+    Optional<Usuario> findDetalleByLegajo(String legajo);
+
+    /**
+     * Usuario por id con sus equipos y archivos cargados en la misma consulta.
+     */
+    @EntityGraph(attributePaths = {"equiposInformaticos", "archivos"})
+    Optional<Usuario> findDetalleById(Long id);
+
+    long countBySite(Site site);
+
+    /**
+     * Todos los usuarios con sus cantidades de equipos y archivos, en una sola consulta.
+     */
+    @Query("SELECT new com.registro.dto.UsuarioResumen(u.id, u.legajo, u.nombre, u.apellido, " +
+            "u.correoElectronico, u.telefono, u.site, " +
+            "(SELECT COUNT(e) FROM EquipoInformatico e WHERE e.usuario = u), " +
+            "(SELECT COUNT(a) FROM Archivo a WHERE a.usuario = u)) " +
+            "FROM Usuario u ORDER BY u.legajo")
+    List<UsuarioResumen> findResumenes();
+
+    /**
+     * Página del directorio de empleados con sus cantidades de equipos y archivos.
+     * Los filtros nulos se ignoran; {@code prefijo} ya viene en minúsculas, con los
+     * comodines escapados con '\' y con '%' final.
+     */
+    @Query(value = "SELECT new com.registro.dto.UsuarioResumen(u.id, u.legajo, u.nombre, u.apellido, " +
+            "u.correoElectronico, u.telefono, u.site, " +
+            "(SELECT COUNT(e) FROM EquipoInformatico e WHERE e.usuario = u), " +
+            "(SELECT COUNT(a) FROM Archivo a WHERE a.usuario = u)) " +
+            "FROM Usuario u " +
+            "WHERE (:site IS NULL OR u.site = :site) " +
+            "AND (:conEquipos IS NULL " +
+            "  OR (:conEquipos = true AND EXISTS (SELECT 1 FROM EquipoInformatico e WHERE e.usuario = u)) " +
+            "  OR (:conEquipos = false AND NOT EXISTS (SELECT 1 FROM EquipoInformatico e WHERE e.usuario = u))) " +
+            "AND (:prefijo IS NULL OR LOWER(u.apellido) LIKE :prefijo ESCAPE '\\' OR LOWER(u.nombre) LIKE :prefijo ESCAPE '\\' " +
+            "  OR LOWER(u.legajo) LIKE :prefijo ESCAPE '\\')",
+            countQuery = "SELECT COUNT(u) FROM Usuario u " +
+            "WHERE (:site IS NULL OR u.site = :site) " +
+            "AND (:conEquipos IS NULL " +
+            "  OR (:conEquipos = true AND EXISTS (SELECT 1 FROM EquipoInformatico e WHERE e.usuario = u)) " +
+            "  OR (:conEquipos = false AND NOT EXISTS (SELECT 1 FROM EquipoInformatico e WHERE e.usuario = u))) " +
+            "AND (:prefijo IS NULL OR LOWER(u.apellido) LIKE :prefijo ESCAPE '\\' OR LOWER(u.nombre) LIKE :prefijo ESCAPE '\\' " +
+            "  OR LOWER(u.legajo) LIKE :prefijo ESCAPE '\\')")
+    Page<UsuarioResumen> buscarDirectorio(@Param("site") Site site,
+                                          @Param("conEquipos") Boolean conEquipos,
+                                          @Param("prefijo") String prefijo,
+                                          Pageable pageable);
+
+    /**
+     * Equipos asignados a los usuarios que cumplen los filtros de {@link #buscarDirectorio}.
+     */
+    @Query("SELECT COUNT(e) FROM EquipoInformatico e JOIN e.usuario u " +
+            "WHERE (:site IS NULL OR u.site = :site) " +
+            "AND (:conEquipos IS NULL OR :conEquipos = true) " +
+            "AND (:prefijo IS NULL OR LOWER(u.apellido) LIKE :prefijo ESCAPE '\\' OR LOWER(u.nombre) LIKE :prefijo ESCAPE '\\' " +
+            "  OR LOWER(u.legajo) LIKE :prefijo ESCAPE '\\')")
+    long contarEquiposDirectorio(@Param("site") Site site,
+                                 @Param("conEquipos") Boolean conEquipos,
+                                 @Param("prefijo") String prefijo);
+
+    /**
+     * Primer bloque de usuarios de un site, ordenados por legajo (lectura por bloques).
+     */
+    List<Usuario> findBySiteOrderByLegajoAsc(Site site, Pageable bloque);
+
+    /**
+     * Bloque siguiente de usuarios de un site a partir del último legajo leído.
+     */
+    List<Usuario> findBySiteAndLegajoGreaterThanOrderByLegajoAsc(Site site, String legajo, Pageable bloque);
 }
@@ -1,63 +1,441 @@
 // src/main/java/com/registro/service/ArchivoService.java
 package com.registro.service;
 
-import com.google.firebase.cloud.StorageClient;
+import com.registro.dto.ArchivoAlmacenado;
 import com.registro.model.Archivo;
+import com.registro.model.ObjetoAlmacenado;
 import com.registro.model.Usuario;
 import com.registro.repository.IArchivoRepository;
+import com.registro.repository.IObjetoAlmacenadoRepository;
 import com.registro.repository.IUsuarioRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.InflaterOutputStream;
 
 @Service
+@Slf4j
 public class ArchivoService {
 
+    /** Prefijo de los objetos guardados por contenido. */
+    private static final String RUTA_CONTENIDO = "contenido/";
+
+    private static final int TAMANIO_BLOQUE = 64 * 1024;
+
+    /** Sufijos de los derivados que se guardan junto al objeto original. */
+    private static final String SUFIJO_MINIATURA = ".miniatura.jpg";
+    private static final String SUFIJO_COMPRIMIDO = ".deflate";
+
     private final IUsuarioRepository usuarioRepository;
     private final IArchivoRepository archivoRepository;
+    private final EstadisticasService estadisticasService;
+    private final FileStorage fileStorage;
+    private final IObjetoAlmacenadoRepository objetoRepository;
+    private final int graciaMinutos;
+    private final ProcesadorArchivos procesador;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor procesamiento;
+
+    /** Hashes que se están procesando, para no tomar dos veces el mismo objeto. */
+    private final Set<String> enProceso = ConcurrentHashMap.newKeySet();
 
     public ArchivoService(IUsuarioRepository usuarioRepository,
-                          IArchivoRepository archivoRepository) {
+                          IArchivoRepository archivoRepository,
+                          EstadisticasService estadisticasService,
+                          FileStorage fileStorage,
+                          IObjetoAlmacenadoRepository objetoRepository,
+                          ProcesadorArchivos procesador,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${archivos.subidas.hilos:8}") int hilos,
+                          @Value("${archivos.subidas.capacidad-cola:100}") int capacidadCola,
+                          @Value("${archivos.deduplicacion.gracia-minutos:60}") int graciaMinutos,
+                          @Value("${archivos.procesamiento.hilos:1}") int hilosProcesamiento,
+                          @Value("${archivos.procesamiento.capacidad-cola:200}") int capacidadProcesamiento) {
         this.usuarioRepository = usuarioRepository;
         this.archivoRepository = archivoRepository;
+        this.estadisticasService = estadisticasService;
+        this.fileStorage = fileStorage;
+        this.objetoRepository = objetoRepository;
+        this.graciaMinutos = graciaMinutos;
+        this.procesador = procesador;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        // Con el pool y la cola llenos la subida corre en el hilo del pedido
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                runnable -> {
+                    Thread hilo = new Thread(runnable, "subidas-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        // Con la cola llena el trabajo se rechaza y lo retoma procesarPendientes()
+        AtomicInteger contadorProcesamiento = new AtomicInteger();
+        this.procesamiento = new ThreadPoolExecutor(hilosProcesamiento, hilosProcesamiento, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadProcesamiento),
+                runnable -> {
+                    Thread hilo = new Thread(runnable, "procesamiento-archivos-" + contadorProcesamiento.incrementAndGet());
+                    hilo.setDaemon(true);
+                    hilo.setPriority(Thread.MIN_PRIORITY);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
     }
 
-    @Transactional
+    /**
+     * Sube los archivos al almacenamiento en paralelo y registra sus metadatos en
+     * una sola transacción. La transacción se abre recién cuando terminaron todas
+     * las subidas, así que no queda una conexión tomada mientras se transfieren;
+     * el tiempo total es aproximadamente el de la subida más lenta.
+     * <p>
+     * El contenido se guarda una sola vez por SHA-256 en {@code contenido/}; un
+     * archivo repetido no se vuelve a transferir y su fila suma una referencia al
+     * objeto existente. Si falla alguna subida o el registro, los objetos nuevos
+     * quedan sin referencias y los borra {@link #limpiarSinReferencias()}.
+     * Confirmado el registro, los objetos nuevos pasan al procesamiento en segundo
+     * plano (miniatura y compresión).
+     */
     public List<Archivo> subirArchivos(String legajo, MultipartFile[] archivos) throws IOException {
         Usuario usuario = usuarioRepository.findByLegajo(legajo)
             .orElseThrow(() -> new RuntimeException("Usuario con legajo " + legajo + " no encontrado"));
 
-        String bucketName = StorageClient.getInstance().bucket().getName();
-        List<Archivo> guardados = new ArrayList<>();
+        List<Archivo> subidos = subirContenido(archivos);
+        if (subidos.isEmpty()) {
+            return subidos;
+        }
+        return registrarSubidos(usuario.getId(), subidos);
+    }
 
+    /**
+     * Primera mitad de {@link #subirArchivos}: transfiere el contenido sin abrir
+     * una transacción y devuelve las entidades sin guardar. Quien la usa debe
+     * llamar luego a {@link #registrarSubidos} dentro de su propia transacción.
+     */
+    public List<Archivo> subirContenido(MultipartFile[] archivos) throws IOException {
+        if (archivos == null) {
+            return new ArrayList<>();
+        }
+        return subirEnParalelo(archivos);
+    }
+
+    /**
+     * Segunda mitad de {@link #subirArchivos}: suma las referencias y guarda las
+     * filas de los archivos ya subidos. Participa de la transacción en curso (o
+     * abre una); el procesamiento en segundo plano arranca recién con el commit.
+     */
+    public List<Archivo> registrarSubidos(Long usuarioId, List<Archivo> subidos) {
+        if (subidos.isEmpty()) {
+            return subidos;
+        }
+        Map<String, Integer> referencias = new HashMap<>();
+        subidos.forEach(a -> referencias.merge(a.getHash(), 1, Integer::sum));
+
+        return transactionTemplate.execute(status -> {
+            referencias.forEach(objetoRepository::sumarReferencias);
+            Usuario propietario = usuarioRepository.getReferenceById(usuarioId);
+            subidos.forEach(a -> a.setUsuario(propietario));
+            List<Archivo> resultado = archivoRepository.saveAll(subidos);
+            estadisticasService.archivosCambiados(usuarioId, resultado.size());
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    referencias.keySet().forEach(ArchivoService.this::encolarProcesamiento);
+                }
+            });
+            return resultado;
+        });
+    }
+
+    /**
+     * Envía cada archivo no vacío al pool de subidas y espera a que terminen todos.
+     * Devuelve las entidades sin guardar, con la URL y la ruta ya asignadas.
+     */
+    private List<Archivo> subirEnParalelo(MultipartFile[] archivos) throws IOException {
+        List<CompletableFuture<Archivo>> pendientes = new ArrayList<>();
         for (MultipartFile file : archivos) {
+            if (file == null || file.isEmpty()) {
+                continue;
+            }
             String nombreOriginal = file.getOriginalFilename();
-            String rutaEnBucket   = "usuarios/" + legajo + "/"
-                                 + System.currentTimeMillis()
-                                 + "_" + nombreOriginal;
+            pendientes.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return subir(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Error al subir " + nombreOriginal + ": " + e.getMessage(), e);
+                }
+            }, executor));
+        }
+
+        List<Archivo> subidos = new ArrayList<>();
+        Throwable error = null;
+        for (CompletableFuture<Archivo> pendiente : pendientes) {
+            try {
+                subidos.add(pendiente.join());
+            } catch (CompletionException e) {
+                if (error == null) {
+                    error = e.getCause();
+                }
+            }
+        }
+        if (error != null) {
+            if (error instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) error).getCause();
+            }
+            throw new IOException("Error al subir archivos: " + error.getMessage(), error);
+        }
+        return subidos;
+    }
+
+    /**
+     * Calcula el SHA-256 de la copia local del archivo y lo sube sólo si el objeto
+     * no existe todavía. Marcar el objeto existente impide que la limpieza lo
+     * borre antes de que se registre la nueva referencia.
+     */
+    private Archivo subir(MultipartFile file) throws IOException {
+        String hash = calcularHash(file);
+        String ruta = RUTA_CONTENIDO + hash.substring(0, 2) + "/" + hash;
+
+        if (objetoRepository.tocar(hash) == 0) {
+            try (InputStream contenido = file.getInputStream()) {
+                fileStorage.guardar(ruta, contenido, file.getContentType());
+            }
+            objetoRepository.registrar(hash, ruta, file.getSize(), file.getContentType());
+        } else {
+            log.debug("Contenido {} ya almacenado, se reutiliza para {}", hash, file.getOriginalFilename());
+        }
+
+        Archivo archivo = new Archivo(file.getOriginalFilename(), fileStorage.url(ruta), ruta, null);
+        archivo.setHash(hash);
+        return archivo;
+    }
+
+    private static String calcularHash(MultipartFile file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[TAMANIO_BLOQUE];
+        try (InputStream contenido = file.getInputStream()) {
+            int leidos;
+            while ((leidos = contenido.read(buffer)) != -1) {
+                digest.update(buffer, 0, leidos);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Borra del almacenamiento los objetos sin referencias cuya gracia venció. El
+     * objeto se borra antes que su fila y con la fila bloqueada, así que una subida
+     * concurrente del mismo contenido espera y después lo vuelve a subir.
+     */
+    @Scheduled(cron = "${archivos.deduplicacion.limpieza-cron:0 30 * * * *}")
+    public void limpiarSinReferencias() {
+        int borrados;
+        do {
+            borrados = transactionTemplate.execute(status -> {
+                List<ObjetoAlmacenado> objetos = objetoRepository.bloquearSinReferencias(graciaMinutos, 100);
+                int eliminados = 0;
+                for (ObjetoAlmacenado objeto : objetos) {
+                    try {
+                        fileStorage.eliminar(objeto.getRuta());
+                        if (objeto.getRutaComprimida() != null) {
+                            fileStorage.eliminar(objeto.getRutaComprimida());
+                        }
+                        if (objeto.getMiniatura() != null) {
+                            fileStorage.eliminar(objeto.getMiniatura());
+                        }
+                        objetoRepository.delete(objeto);
+                        eliminados++;
+                    } catch (Exception e) {
+                        log.warn("No se pudo borrar el objeto sin referencias {}: {}", objeto.getRuta(), e.getMessage());
+                    }
+                }
+                return eliminados;
+            });
+            if (borrados > 0) {
+                log.info("Limpieza de almacenamiento: {} objetos sin referencias borrados", borrados);
+            }
+        } while (borrados == 100);
+
+        int originales;
+        do {
+            originales = transactionTemplate.execute(status -> {
+                List<ObjetoAlmacenado> objetos = objetoRepository.bloquearConOriginalDescartado(graciaMinutos, 100);
+                int eliminados = 0;
+                for (ObjetoAlmacenado objeto : objetos) {
+                    try {
+                        fileStorage.eliminar(objeto.getRutaDescartada());
+                        objetoRepository.olvidarDescartada(objeto.getHash());
+                        eliminados++;
+                    } catch (Exception e) {
+                        log.warn("No se pudo borrar el original comprimido {}: {}", objeto.getRutaDescartada(), e.getMessage());
+                    }
+                }
+                return eliminados;
+            });
+            if (originales > 0) {
+                log.info("Limpieza de almacenamiento: {} originales reemplazados por su versión comprimida", originales);
+            }
+        } while (originales == 100);
+    }
+
+    private void encolarProcesamiento(String hash) {
+        if (enProceso.add(hash)) {
+            try {
+                procesamiento.execute(() -> {
+                    try {
+                        procesar(hash);
+                    } finally {
+                        enProceso.remove(hash);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                enProceso.remove(hash);
+            }
+        }
+    }
+
+    /**
+     * Retoma los objetos sin procesar: los descartados con la cola llena, los que
+     * fallaron por un error del almacenamiento y los pendientes de un reinicio.
+     */
+    @Scheduled(fixedDelayString = "${archivos.procesamiento.revision-ms:300000}",
+               initialDelayString = "${archivos.procesamiento.revision-ms:300000}")
+    public void procesarPendientes() {
+        int libres = procesamiento.getQueue().remainingCapacity();
+        if (libres > 0) {
+            objetoRepository.findPendientesDeProcesar(libres).forEach(this::encolarProcesamiento);
+        }
+    }
+
+    /**
+     * Genera la miniatura y, si conviene, la versión comprimida de un objeto. Ambas
+     * se guardan junto al original; el original comprimido se borra recién cuando
+     * vence la gracia, para no cortar descargas que ya lo estaban leyendo.
+     */
+    private void procesar(String hash) {
+        ObjetoAlmacenado objeto = objetoRepository.findById(hash).orElse(null);
+        if (objeto == null || objeto.getProcesado() != null) {
+            return;
+        }
+        Path copia = null;
+        Path comprimido = null;
+        String rutaMiniatura = null;
+        String rutaComprimida = null;
+        try {
+            Optional<ArchivoAlmacenado> original = fileStorage.obtener(objeto.getRuta());
+            if (original.isEmpty()) {
+                log.warn("Objeto {} sin contenido en el almacenamiento, no se procesa", objeto.getRuta());
+                return;
+            }
+            copia = Files.createTempFile("procesamiento", ".bin");
+            try (OutputStream salida = Files.newOutputStream(copia)) {
+                if (original.get().getTamanio() > 0) {
+                    fileStorage.transferir(original.get(), 0, original.get().getTamanio() - 1, salida);
+                }
+            }
+            String contentType = objeto.getContentType();
 
-            // Subir al bucket
-            StorageClient.getInstance()
-                         .bucket()
-                         .create(rutaEnBucket,
-                                 file.getInputStream(),
-                                 file.getContentType());
+            Optional<byte[]> miniatura = procesador.generarMiniatura(copia, contentType);
+            if (miniatura.isPresent()) {
+                rutaMiniatura = objeto.getRuta() + SUFIJO_MINIATURA;
+                fileStorage.guardar(rutaMiniatura, new ByteArrayInputStream(miniatura.get()), "image/jpeg");
+            }
 
-            // Construir URL pública
-            String urlPublica = String.format(
-                "https://storage.googleapis.com/%s/%s",
-                bucketName, rutaEnBucket
-            );
+            if (procesador.esComprimible(contentType, Files.size(copia))) {
+                comprimido = procesador.comprimir(copia).orElse(null);
+                if (comprimido != null) {
+                    rutaComprimida = objeto.getRuta() + SUFIJO_COMPRIMIDO;
+                    try (InputStream contenido = Files.newInputStream(comprimido)) {
+                        fileStorage.guardar(rutaComprimida, contenido, "application/octet-stream");
+                    }
+                }
+            }
 
-            Archivo ent = new Archivo(nombreOriginal, urlPublica, rutaEnBucket, usuario);
-            guardados.add(archivoRepository.save(ent));
+            if (objetoRepository.marcarProcesado(hash, rutaMiniatura, rutaComprimida) == 0) {
+                // El objeto se borró mientras tanto: no dejar derivados huérfanos
+                eliminarSilencioso(rutaMiniatura);
+                eliminarSilencioso(rutaComprimida);
+            } else {
+                log.debug("Objeto {} procesado (miniatura: {}, comprimido: {})",
+                        hash, rutaMiniatura != null, rutaComprimida != null);
+            }
+        } catch (Exception e) {
+            log.warn("Error procesando el objeto {}: {}", hash, e.getMessage());
+            eliminarSilencioso(rutaMiniatura);
+            eliminarSilencioso(rutaComprimida);
+        } finally {
+            borrarTemporal(copia);
+            borrarTemporal(comprimido);
         }
+    }
 
-        return guardados;
+    private void eliminarSilencioso(String ruta) {
+        if (ruta == null) {
+            return;
+        }
+        try {
+            fileStorage.eliminar(ruta);
+        } catch (Exception e) {
+            log.warn("No se pudo borrar {}: {}", ruta, e.getMessage());
+        }
+    }
+
+    private static void borrarTemporal(Path temporal) {
+        if (temporal == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temporal);
+        } catch (IOException e) {
+            log.warn("No se pudo borrar el temporal {}: {}", temporal, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        executor.shutdown();
+        procesamiento.shutdownNow();
     }
 
     @Transactional
@@ -65,25 +443,23 @@ public class ArchivoService {
         Archivo a = archivoRepository.findById(archivoId)
             .orElseThrow(() -> new RuntimeException("Archivo no encontrado"));
 
-        // Determinar nombre de blob: preferir 'path', si es null extraer de URL
-        String blobName;
-        if (a.getPath() != null && !a.getPath().isEmpty()) {
-            blobName = a.getPath();
+        if (a.getHash() != null) {
+            // Objeto compartido: se libera la referencia y la limpieza lo borra al quedar sin ninguna
+            objetoRepository.sumarReferencias(a.getHash(), -1);
         } else {
-            String bucket = StorageClient.getInstance().bucket().getName();
-            String prefix = "https://storage.googleapis.com/" + bucket + "/";
-            blobName = a.getUrl().substring(prefix.length());
-        }
-
-        // Borrar del bucket si existe
-        com.google.cloud.storage.Blob blob =
-            StorageClient.getInstance().bucket().get(blobName);
-        if (blob != null) {
-            blob.delete();
+            // Archivo anterior a la deduplicación: borrar del almacenamiento si existe
+            try {
+                fileStorage.eliminar(rutaDe(a));
+            } catch (IOException e) {
+                throw new RuntimeException("Error al eliminar el archivo del almacenamiento: " + e.getMessage(), e);
+            }
         }
 
         // Borrar registro en BD
         archivoRepository.delete(a);
+        if (a.getUsuario() != null) {
+            estadisticasService.archivosCambiados(a.getUsuario().getId(), -1);
+        }
     }
 
     public Archivo obtenerArchivoPorId(Long archivoId) {
@@ -91,12 +467,126 @@ public class ArchivoService {
             .orElseThrow(() -> new RuntimeException("Archivo no encontrado con ID: " + archivoId));
     }
 
-    @Transactional(readOnly = true)
-    public byte[] descargarArchivoBytes(String path) throws IOException {
-        com.google.cloud.storage.Blob blob = StorageClient.getInstance().bucket().get(path);
-        if (blob == null) {
-            throw new IOException("No se encontró el archivo en Firebase Storage con la ruta: " + path);
+    /**
+     * Metadatos del objeto en el almacenamiento (tamaño, tipo, versión), sin leer el
+     * contenido. Si el archivo tiene versión comprimida se devuelve ésa, con el
+     * tamaño y tipo del original.
+     */
+    public ArchivoAlmacenado obtenerAlmacenado(Archivo archivo) throws IOException {
+        ObjetoAlmacenado objeto = archivo.getHash() != null ? objetoRepository.findById(archivo.getHash()).orElse(null) : null;
+        if (objeto != null && objeto.getRutaComprimida() != null) {
+            ArchivoAlmacenado comprimido = fileStorage.obtener(objeto.getRutaComprimida())
+                .orElseThrow(() -> new IOException("No se encontró la versión comprimida: " + objeto.getRutaComprimida()));
+            return comprimido.comoComprimidoDe(objeto.getTamanio(), objeto.getContentType());
+        }
+        String ruta = rutaDe(archivo);
+        return fileStorage.obtener(ruta)
+            .orElseThrow(() -> new IOException("No se encontró el archivo en el almacenamiento con la ruta: " + ruta));
+    }
+
+    /**
+     * Miniatura JPEG del archivo, si el procesamiento ya la generó.
+     */
+    public Optional<ArchivoAlmacenado> obtenerMiniatura(Archivo archivo) throws IOException {
+        if (archivo.getHash() == null) {
+            return Optional.empty();
+        }
+        Optional<ObjetoAlmacenado> objeto = objetoRepository.findById(archivo.getHash());
+        if (objeto.isEmpty() || objeto.get().getMiniatura() == null) {
+            return Optional.empty();
+        }
+        return fileStorage.obtener(objeto.get().getMiniatura());
+    }
+
+    /**
+     * Copia los bytes [desde, hasta] (inclusive) del objeto al stream. La memoria
+     * usada no depende del tamaño del archivo. Una versión comprimida se
+     * descomprime al vuelo desde el principio, se descartan los bytes anteriores
+     * al rango y la lectura se corta apenas se pasa de {@code hasta}.
+     */
+    public void transferir(ArchivoAlmacenado archivo, long desde, long hasta, OutputStream outputStream) throws IOException {
+        if (!archivo.isComprimido()) {
+            fileStorage.transferir(archivo, desde, hasta, outputStream);
+            return;
+        }
+        try (InflaterOutputStream descomprimido = new InflaterOutputStream(new RangoOutputStream(outputStream, desde, hasta))) {
+            fileStorage.transferir(archivo, 0, archivo.getTamanioAlmacenado() - 1, descomprimido);
+        } catch (RangoCompleto e) {
+            // El rango pedido ya se envió: no se lee ni se descomprime el resto del objeto
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * Deja pasar sólo los bytes [desde, hasta] de lo que se escribe. Al pasar de
+     * {@code hasta} lanza {@link RangoCompleto} una vez, para cortar la lectura
+     * del almacenamiento; lo que llegue después se descarta. Cerrarlo no cierra
+     * el stream de destino.
+     */
+    private static class RangoOutputStream extends FilterOutputStream {
+        private final long desde;
+        private final long hasta;
+        private long posicion;
+        private boolean completo;
+
+        RangoOutputStream(OutputStream destino, long desde, long hasta) {
+            super(destino);
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (posicion >= desde && posicion <= hasta) {
+                out.write(b);
+            }
+            posicion++;
+            verificarCompleto();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long inicio = Math.max(posicion, desde);
+            long fin = Math.min(posicion + len - 1, hasta);
+            if (inicio <= fin) {
+                out.write(b, off + (int) (inicio - posicion), (int) (fin - inicio + 1));
+            }
+            posicion += len;
+            verificarCompleto();
+        }
+
+        private void verificarCompleto() throws RangoCompleto {
+            if (!completo && posicion > hasta) {
+                completo = true;
+                throw new RangoCompleto();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Señal interna de {@link RangoOutputStream}: no es un error y no lleva traza.
+     */
+    private static class RangoCompleto extends IOException {
+        RangoCompleto() {
+            super("Rango completo", null);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    // Ruta del objeto: preferir 'path', si es null extraer de la URL
+    private String rutaDe(Archivo archivo) {
+        if (archivo.getPath() != null && !archivo.getPath().isEmpty()) {
+            return archivo.getPath();
         }
-        return blob.getContent();
+        return fileStorage.rutaDesdeUrl(archivo.getUrl());
     }
 }
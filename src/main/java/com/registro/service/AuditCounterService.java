@@ -0,0 +1,198 @@
+package com.registro.service;
+
+import com.registro.config.AuditLogPartitionManager;
+import com.registro.model.AuditLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Contadores de la auditoría (total, críticas, logins fallidos por día y
+ * actividades por usuario) dentro del período retenido. Se cargan una vez desde
+ * la base y luego los actualiza {@link AuditLogWriter} con cada lote insertado,
+ * de modo que la página de actividad no ejecuta consultas agregadas.
+ */
+@Service
+@Slf4j
+public class AuditCounterService {
+
+    /** Días de logins fallidos que se conservan en memoria. */
+    private static final int DIAS_LOGINS_FALLIDOS = 31;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditLogPartitionManager partitionManager;
+
+    /** La recarga toma el lock de escritura; las actualizaciones, el de lectura. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong criticas = new AtomicLong();
+    private final Map<LocalDate, AtomicLong> loginsFallidosPorDia = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> porUsuario = new ConcurrentHashMap<>();
+    private volatile LocalDateTime desdeCargado;
+
+    /** Pausa mínima entre recargas disparadas por una lectura. */
+    private final long reintentoMs;
+    /** Momento (epoch ms) a partir del cual una lectura puede volver a disparar una recarga. */
+    private final AtomicLong proximoIntento = new AtomicLong();
+
+    public AuditCounterService(JdbcTemplate jdbcTemplate, AuditLogPartitionManager partitionManager,
+                               @Value("${auditoria.contadores.reintento-ms:60000}") long reintentoMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.partitionManager = partitionManager;
+        this.reintentoMs = reintentoMs;
+    }
+
+    /**
+     * Carga los contadores desde la base. La llama {@link AuditLogWriter} antes de
+     * empezar a insertar, y una tarea diaria la repite para acompañar el corrimiento
+     * del período retenido.
+     */
+    @Scheduled(cron = "${auditoria.contadores.cron:0 45 3 * * *}")
+    public void recargar() {
+        LocalDateTime desde = partitionManager.getInicioRetencion().atStartOfDay();
+        Timestamp desdeSql = Timestamp.valueOf(desde);
+        Timestamp desdeLogins = Timestamp.valueOf(LocalDate.now().minusDays(DIAS_LOGINS_FALLIDOS).atStartOfDay());
+
+        lock.writeLock().lock();
+        try {
+            long nuevoTotal = 0;
+            long nuevasCriticas = 0;
+            Map<String, AtomicLong> nuevosPorUsuario = new ConcurrentHashMap<>();
+            // Una sola pasada agrupada por usuario y acción
+            for (Map<String, Object> fila : jdbcTemplate.queryForList(
+                    "SELECT username, action, COUNT(*) AS total FROM audit_logs WHERE timestamp >= ? "
+                            + "GROUP BY username, action", desdeSql)) {
+                long cantidad = ((Number) fila.get("total")).longValue();
+                String username = (String) fila.get("username");
+                nuevoTotal += cantidad;
+                if (esCritica((String) fila.get("action"))) {
+                    nuevasCriticas += cantidad;
+                }
+                if (username != null) {
+                    nuevosPorUsuario.computeIfAbsent(username, k -> new AtomicLong()).addAndGet(cantidad);
+                }
+            }
+
+            Map<LocalDate, AtomicLong> nuevosLogins = new ConcurrentHashMap<>();
+            for (Map<String, Object> fila : jdbcTemplate.queryForList(
+                    "SELECT CAST(timestamp AS date) AS dia, COUNT(*) AS total FROM audit_logs "
+                            + "WHERE action = 'LOGIN_FALLIDO' AND timestamp >= ? GROUP BY CAST(timestamp AS date)",
+                    desdeLogins)) {
+                LocalDate dia = ((java.sql.Date) fila.get("dia")).toLocalDate();
+                nuevosLogins.put(dia, new AtomicLong(((Number) fila.get("total")).longValue()));
+            }
+
+            total.set(nuevoTotal);
+            criticas.set(nuevasCriticas);
+            porUsuario.clear();
+            porUsuario.putAll(nuevosPorUsuario);
+            loginsFallidosPorDia.clear();
+            loginsFallidosPorDia.putAll(nuevosLogins);
+            desdeCargado = desde;
+            log.info("Contadores de auditoría cargados: {} actividades, {} críticas", nuevoTotal, nuevasCriticas);
+        } catch (Exception e) {
+            log.warn("No se pudieron cargar los contadores de auditoría: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ejecuta una inserción y suma los eventos que efectivamente se confirmaron.
+     * Mientras tanto no puede correr una recarga, así que un lote nunca se cuenta
+     * dos veces (en la consulta de carga y acá) ni se pierde entre ambas.
+     */
+    public boolean insertarYContar(Supplier<List<AuditLog>> insercion) {
+        lock.readLock().lock();
+        try {
+            List<AuditLog> insertados = insercion.get();
+            if (insertados == null) {
+                return false;
+            }
+            sumar(insertados);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void sumar(Collection<AuditLog> eventos) {
+        LocalDateTime desde = desdeCargado;
+        LocalDate limiteLogins = LocalDate.now().minusDays(DIAS_LOGINS_FALLIDOS);
+        for (AuditLog evento : eventos) {
+            if (desde != null && evento.getTimestamp().isBefore(desde)) {
+                continue;
+            }
+            total.incrementAndGet();
+            if (esCritica(evento.getAction())) {
+                criticas.incrementAndGet();
+            }
+            if (evento.getUsername() != null) {
+                porUsuario.computeIfAbsent(evento.getUsername(), k -> new AtomicLong()).incrementAndGet();
+            }
+            LocalDate dia = evento.getTimestamp().toLocalDate();
+            if ("LOGIN_FALLIDO".equals(evento.getAction()) && !dia.isBefore(limiteLogins)) {
+                loginsFallidosPorDia.computeIfAbsent(dia, k -> new AtomicLong()).incrementAndGet();
+            }
+        }
+        loginsFallidosPorDia.keySet().removeIf(dia -> dia.isBefore(limiteLogins));
+    }
+
+    /**
+     * Si los contadores no corresponden al período retenido actual, una sola
+     * lectura por intervalo intenta recargarlos; las demás (y todas, si la carga
+     * falla) usan los valores que haya mientras tanto. Así una base lenta o caída
+     * no repite la consulta agregada en cada lectura ni frena al escritor.
+     */
+    private void asegurarVigente() {
+        LocalDateTime desde = partitionManager.getInicioRetencion().atStartOfDay();
+        if (desde.equals(desdeCargado)) {
+            return;
+        }
+        long ahora = System.currentTimeMillis();
+        long permitido = proximoIntento.get();
+        if (ahora < permitido || !proximoIntento.compareAndSet(permitido, ahora + reintentoMs)) {
+            return;
+        }
+        recargar();
+    }
+
+    public long getTotal() {
+        asegurarVigente();
+        return total.get();
+    }
+
+    public long getCriticas() {
+        asegurarVigente();
+        return criticas.get();
+    }
+
+    public long getLoginsFallidos(LocalDate dia) {
+        asegurarVigente();
+        AtomicLong contador = loginsFallidosPorDia.get(dia);
+        return contador != null ? contador.get() : 0L;
+    }
+
+    public long getPorUsuario(String username) {
+        asegurarVigente();
+        AtomicLong contador = porUsuario.get(username);
+        return contador != null ? contador.get() : 0L;
+    }
+
+    private static boolean esCritica(String action) {
+        return "CREAR".equals(action) || "EDITAR".equals(action) || "ELIMINAR".equals(action);
+    }
+}
@@ -0,0 +1,152 @@
+package com.registro.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.registro.config.AuditLogPartitionManager;
+import com.registro.model.AuditLog;
+import com.registro.repository.AuditLogRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportación de la auditoría en CSV o NDJSON comprimidos con gzip, pensada
+ * para alimentar un SIEM. Las filas se leen con un cursor de sólo avance y se
+ * escriben a medida que llegan, así que el consumo de memoria no depende de la
+ * cantidad de registros.
+ */
+@Service
+@Slf4j
+public class AuditLogExportService {
+
+    public static final Set<String> FORMATOS = Set.of("csv", "ndjson");
+
+    private static final String[] COLUMNAS =
+            {"id", "timestamp", "username", "action", "entityType", "entityId", "ipAddress", "details"};
+
+    private final AuditLogRepository auditLogRepository;
+    private final AuditLogPartitionManager partitionManager;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public AuditLogExportService(AuditLogRepository auditLogRepository,
+                                 AuditLogPartitionManager partitionManager,
+                                 ObjectMapper objectMapper) {
+        this.auditLogRepository = auditLogRepository;
+        this.partitionManager = partitionManager;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Escribe las actividades del rango [desde, hasta) en el stream, comprimidas.
+     * Sin desde se toma el inicio del período retenido; sin hasta, el momento actual.
+     *
+     * @return cantidad de filas exportadas
+     */
+    @Transactional(readOnly = true)
+    public long exportar(LocalDateTime desde, LocalDateTime hasta, Set<String> acciones, String formato,
+                         OutputStream outputStream) throws IOException {
+        if (!FORMATOS.contains(formato)) {
+            throw new RuntimeException("Formato de exportación no soportado: " + formato);
+        }
+        LocalDateTime inicio = desde != null ? desde : partitionManager.getInicioRetencion().atStartOfDay();
+        LocalDateTime fin = hasta != null ? hasta : LocalDateTime.now();
+        boolean todasLasAcciones = acciones == null || acciones.isEmpty();
+        // La lista nunca va vacía: un IN () no es válido en SQL
+        List<String> filtroAcciones = todasLasAcciones ? List.of("") : List.copyOf(acciones);
+
+        GZIPOutputStream gzip = new GZIPOutputStream(outputStream, 64 * 1024);
+        long filas;
+        try (Stream<AuditLog> registros = auditLogRepository.streamParaExportar(inicio, fin, todasLasAcciones, filtroAcciones)) {
+            filas = "csv".equals(formato) ? escribirCsv(registros, gzip) : escribirNdjson(registros, gzip);
+        }
+        gzip.finish();
+        outputStream.flush();
+        log.info("Exportación de auditoría {} ({} - {}): {} filas", formato, inicio, fin, filas);
+        return filas;
+    }
+
+    private long escribirCsv(Stream<AuditLog> registros, OutputStream salida) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(String.join(",", COLUMNAS));
+        writer.write('\n');
+        long filas = 0;
+        for (Iterator<AuditLog> it = registros.iterator(); it.hasNext(); ) {
+            AuditLog a = it.next();
+            writer.write(String.valueOf(a.getId()));
+            writer.write(',');
+            writer.write(a.getTimestamp().toString());
+            for (String valor : new String[]{a.getUsername(), a.getAction(), a.getEntityType(),
+                    a.getEntityId(), a.getIpAddress(), a.getDetails()}) {
+                writer.write(',');
+                writer.write(csv(valor));
+            }
+            writer.write('\n');
+            liberar(a, ++filas);
+        }
+        writer.flush();
+        return filas;
+    }
+
+    private long escribirNdjson(Stream<AuditLog> registros, OutputStream salida) throws IOException {
+        long filas = 0;
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(salida)) {
+            // El generador no debe cerrar el stream gzip: falta escribir el final
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.setRootValueSeparator(null);
+            for (Iterator<AuditLog> it = registros.iterator(); it.hasNext(); ) {
+                AuditLog a = it.next();
+                json.writeStartObject();
+                json.writeNumberField("id", a.getId());
+                json.writeStringField("timestamp", a.getTimestamp().toString());
+                json.writeStringField("username", a.getUsername());
+                json.writeStringField("action", a.getAction());
+                json.writeStringField("entityType", a.getEntityType());
+                json.writeStringField("entityId", a.getEntityId());
+                json.writeStringField("ipAddress", a.getIpAddress());
+                json.writeStringField("details", a.getDetails());
+                json.writeEndObject();
+                json.writeRaw('\n');
+                liberar(a, ++filas);
+            }
+        }
+        return filas;
+    }
+
+    /**
+     * Quita la fila del contexto de persistencia para que no crezca con la exportación.
+     */
+    private void liberar(AuditLog registro, long filas) {
+        entityManager.detach(registro);
+        if (filas % 10_000 == 0) {
+            log.debug("Exportación de auditoría: {} filas", filas);
+        }
+    }
+
+    private static String csv(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor.indexOf(',') >= 0 || valor.indexOf('"') >= 0 || valor.indexOf('\n') >= 0 || valor.indexOf('\r') >= 0) {
+            return '"' + valor.replace("\"", "\"\"") + '"';
+        }
+        return valor;
+    }
+}
@@ -1,16 +1,28 @@
 package com.registro.service;
 
+import com.registro.config.AuditLogPartitionManager;
+import com.registro.dto.AuditLogFiltro;
+import com.registro.dto.CursorPage;
+import com.registro.dto.CursorToken;
 import com.registro.model.AuditLog;
 import com.registro.repository.AuditLogRepository;
+import com.registro.repository.AuditLogSpecifications;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Service
 public class AuditLogService {
@@ -18,62 +30,130 @@ public class AuditLogService {
     @Autowired
     private AuditLogRepository auditLogRepository;
 
-    // Registrar una actividad
+    @Autowired
+    private AuditLogWriter auditLogWriter;
+
+    @Autowired
+    private AuditLogPartitionManager partitionManager;
+
+    @Autowired
+    private AuditCounterService auditCounterService;
+
+    // Registrar una actividad (se persiste en segundo plano, ver AuditLogWriter)
     public void logActivity(String action, String entityType, String entityId, String details) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         String username = (auth != null) ? auth.getName() : "SYSTEM";
         
         AuditLog log = new AuditLog(username, action, entityType, entityId, details);
-        auditLogRepository.save(log);
+        log.setIpAddress(ipActual());
+        auditLogWriter.registrar(log);
     }
 
     // Registrar actividad con usuario específico
     public void logActivity(String username, String action, String entityType, String entityId, String details) {
         AuditLog log = new AuditLog(username, action, entityType, entityId, details);
-        auditLogRepository.save(log);
+        log.setIpAddress(ipActual());
+        auditLogWriter.registrar(log);
+    }
+
+    // IP de la petición en curso, si la hay
+    private String ipActual() {
+        RequestAttributes atributos = RequestContextHolder.getRequestAttributes();
+        if (atributos instanceof ServletRequestAttributes servlet) {
+            return servlet.getRequest().getRemoteAddr();
+        }
+        return null;
+    }
+
+    // Inicio del período retenido; acota las consultas a las particiones vigentes
+    private LocalDateTime desde() {
+        return partitionManager.getInicioRetencion().atStartOfDay();
     }
 
     // Obtener todas las actividades
     public Page<AuditLog> findAll(Pageable pageable) {
-        return auditLogRepository.findAll(pageable);
+        return auditLogRepository.findByTimestampGreaterThanEqual(desde(), pageable);
+    }
+
+    // Obtener actividades con paginación por clave (timestamp, id)
+    public CursorPage<AuditLog> findPorCursor(String cursor, int size) {
+        Pageable limite = PageRequest.of(0, size + 1);
+        List<AuditLog> filas;
+        if (cursor == null || cursor.isBlank()) {
+            filas = auditLogRepository.findMasRecientes(desde(), limite);
+        } else {
+            CursorToken token = CursorToken.decode(cursor);
+            filas = auditLogRepository.findAnterioresA(desde(), token.getClaveComoFechaHora(), token.getId(), limite);
+        }
+        return CursorPage.of(filas, size, a -> CursorToken.encode(a.getTimestamp(), a.getId()));
+    }
+
+    /**
+     * Búsqueda combinada (rango de fechas, acciones, entidad, prefijo de usuario e IP)
+     * con paginación por clave (timestamp, id). El rango se acota al período retenido.
+     */
+    public CursorPage<AuditLog> buscar(AuditLogFiltro filtro, String cursor, int size) {
+        if (filtro.getDesde() == null || filtro.getDesde().isBefore(desde())) {
+            filtro.setDesde(desde());
+        }
+        Specification<AuditLog> spec = AuditLogSpecifications.conFiltro(filtro);
+        if (cursor != null && !cursor.isBlank()) {
+            CursorToken token = CursorToken.decode(cursor);
+            spec = spec.and(AuditLogSpecifications.anteriorA(token.getClaveComoFechaHora(), token.getId()));
+        }
+        Sort orden = Sort.by(Sort.Direction.DESC, "timestamp").and(Sort.by(Sort.Direction.DESC, "id"));
+
+        List<AuditLog> filas = auditLogRepository.findBy(spec, q -> q.sortBy(orden).limit(size + 1).all());
+        return CursorPage.of(filas, size, a -> CursorToken.encode(a.getTimestamp(), a.getId()));
+    }
+
+    /**
+     * Página del listado de actividad con los filtros de usuario y críticas combinados.
+     */
+    public Page<AuditLog> buscarPagina(String username, boolean soloCriticas, Pageable pageable) {
+        AuditLogFiltro filtro = new AuditLogFiltro();
+        filtro.setDesde(desde());
+        filtro.setAcciones(soloCriticas ? AuditLogSpecifications.ACCIONES_CRITICAS : null);
+        Specification<AuditLog> spec = AuditLogSpecifications.conFiltro(filtro)
+                .and(AuditLogSpecifications.conUsernameQueContiene(username));
+        return auditLogRepository.findAll(spec, pageable);
     }
 
     // Buscar por nombre de usuario
     public Page<AuditLog> findByUsernameContaining(String username, Pageable pageable) {
-        return auditLogRepository.findByUsernameContainingIgnoreCase(username, pageable);
+        return auditLogRepository.findByUsernameContainingIgnoreCaseAndTimestampGreaterThanEqual(username, desde(), pageable);
     }
 
     // Obtener solo actividades críticas
     public Page<AuditLog> findCriticalActivities(Pageable pageable) {
-        return auditLogRepository.findCriticalActivities(pageable);
+        return auditLogRepository.findCriticalActivities(desde(), pageable);
     }
 
     // Buscar por tipo de entidad
     public Page<AuditLog> findByEntityType(String entityType, Pageable pageable) {
-        return auditLogRepository.findByEntityType(entityType, pageable);
+        return auditLogRepository.findByEntityTypeAndTimestampGreaterThanEqual(entityType, desde(), pageable);
     }
 
     // Buscar por acción
     public Page<AuditLog> findByAction(String action, Pageable pageable) {
-        return auditLogRepository.findByAction(action, pageable);
+        return auditLogRepository.findByActionAndTimestampGreaterThanEqual(action, desde(), pageable);
     }
 
-    // Obtener estadísticas
+    // Obtener estadísticas (contadores en memoria, ver AuditCounterService)
     public Long getTotalActivities() {
-        return auditLogRepository.count();
+        return auditCounterService.getTotal();
     }
 
     public Long getCriticalActivitiesCount() {
-        return auditLogRepository.countCriticalActivities();
+        return auditCounterService.getCriticas();
     }
 
     public long getFailedLoginsToday() {
-        LocalDateTime todayStart = LocalDate.now().atStartOfDay();
-        return auditLogRepository.countFailedLoginsSince(todayStart);
+        return auditCounterService.getLoginsFallidos(LocalDate.now());
     }
 
     public Long getActivitiesByUser(String username) {
-        return auditLogRepository.countByUsername(username);
+        return auditCounterService.getPorUsuario(username);
     }
 
     // Métodos de conveniencia para registrar actividades específicas
@@ -0,0 +1,366 @@
+package com.registro.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.registro.model.AuditLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Escritor asíncrono de la auditoría. Los eventos se encolan sin bloquear al
+ * hilo de la petición y un hilo de fondo los inserta en lotes JDBC. Si la cola
+ * se llena, o la base no responde, los eventos se vuelcan a disco y se
+ * reintentan más tarde (también al arrancar). Al cerrar se vacía la cola.
+ */
+@Component
+@Slf4j
+public class AuditLogWriter {
+
+    private static final String INSERT =
+            "INSERT INTO audit_logs (username, action, entity_type, entity_id, details, timestamp, ip_address) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String PREFIJO_DESBORDE = "auditoria-";
+    private static final String PREFIJO_REPROCESO = "reproceso-";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditCounterService contadores;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int capacidad;
+    private final int tamanioLote;
+    private final long intervaloNanos;
+    private final Path directorioDesborde;
+
+    private final ConcurrentLinkedQueue<AuditLog> cola = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger enCola = new AtomicInteger();
+    private final Object bloqueoDesborde = new Object();
+    private final Counter escritos;
+    private final Counter desbordados;
+
+    private volatile boolean activo = true;
+    private volatile boolean hayDesborde;
+    private final Thread hilo;
+
+    public AuditLogWriter(JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          AuditCounterService contadores,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${auditoria.cola.capacidad:10000}") int capacidad,
+                          @Value("${auditoria.cola.lote:200}") int tamanioLote,
+                          @Value("${auditoria.cola.intervalo-ms:500}") long intervaloMs,
+                          @Value("${auditoria.cola.directorio-desborde:${java.io.tmpdir}/registro-auditoria}") String directorioDesborde)
+            throws IOException {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.contadores = contadores;
+        this.objectMapper = objectMapper;
+        this.capacidad = capacidad;
+        this.tamanioLote = tamanioLote;
+        this.intervaloNanos = TimeUnit.MILLISECONDS.toNanos(intervaloMs);
+        this.directorioDesborde = Files.createDirectories(Paths.get(directorioDesborde));
+
+        this.escritos = Counter.builder("auditoria.eventos").tag("destino", "base").register(meterRegistry);
+        this.desbordados = Counter.builder("auditoria.eventos").tag("destino", "disco").register(meterRegistry);
+        Gauge.builder("auditoria.cola", enCola, AtomicInteger::get).register(meterRegistry);
+
+        this.hilo = new Thread(this::procesar, "auditoria-escritor");
+        this.hilo.setDaemon(true);
+    }
+
+    /**
+     * El hilo arranca cuando la aplicación está lista, para no competir con la
+     * inicialización del esquema; los eventos anteriores quedan en la cola.
+     * Los contadores se cargan antes de la primera inserción.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        contadores.recargar();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorioDesborde, PREFIJO_DESBORDE + "*")) {
+            hayDesborde = archivos.iterator().hasNext();
+        } catch (IOException e) {
+            log.warn("No se pudo revisar el directorio de desborde de auditoría: {}", e.getMessage());
+        }
+        hilo.start();
+    }
+
+    /**
+     * Encola un evento. Nunca bloquea: si la cola está llena el evento se
+     * escribe en el archivo de desborde.
+     */
+    public void registrar(AuditLog evento) {
+        if (activo && reservarLugar()) {
+            cola.offer(evento);
+            if (enCola.get() >= tamanioLote) {
+                LockSupport.unpark(hilo);
+            }
+            return;
+        }
+        desbordar(List.of(evento));
+    }
+
+    private boolean reservarLugar() {
+        while (true) {
+            int actual = enCola.get();
+            if (actual >= capacidad) {
+                return false;
+            }
+            if (enCola.compareAndSet(actual, actual + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void procesar() {
+        while (activo) {
+            try {
+                if (!vaciarLote()) {
+                    if (hayDesborde) {
+                        reprocesarDesborde();
+                    }
+                    LockSupport.parkNanos(this, intervaloNanos);
+                }
+            } catch (Exception e) {
+                log.error("Error en el escritor de auditoría: {}", e.getMessage(), e);
+                LockSupport.parkNanos(this, intervaloNanos);
+            }
+        }
+    }
+
+    /**
+     * Inserta hasta un lote de eventos de la cola.
+     *
+     * @return true si había eventos en la cola
+     */
+    private boolean vaciarLote() {
+        List<AuditLog> lote = new ArrayList<>(tamanioLote);
+        AuditLog evento;
+        while (lote.size() < tamanioLote && (evento = cola.poll()) != null) {
+            enCola.decrementAndGet();
+            lote.add(evento);
+        }
+        if (lote.isEmpty()) {
+            return false;
+        }
+        if (!insertar(lote)) {
+            desbordar(lote);
+        }
+        return true;
+    }
+
+    /**
+     * @return false si la base no está disponible y el lote debe reintentarse
+     */
+    private boolean insertar(List<AuditLog> lote) {
+        return contadores.insertarYContar(() -> insertarLote(lote));
+    }
+
+    /**
+     * @return los eventos insertados, o null si no se insertó ninguno porque la base no respondió
+     */
+    private List<AuditLog> insertarLote(List<AuditLog> lote) {
+        try {
+            // En una transacción, para que un lote fallido no quede insertado a medias
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT, lote, lote.size(), (ps, evento) -> {
+                        ps.setString(1, evento.getUsername());
+                        ps.setString(2, evento.getAction());
+                        ps.setString(3, evento.getEntityType());
+                        ps.setString(4, evento.getEntityId());
+                        ps.setString(5, evento.getDetails());
+                        ps.setTimestamp(6, Timestamp.valueOf(evento.getTimestamp()));
+                        ps.setString(7, evento.getIpAddress());
+                    }));
+            escritos.increment(lote.size());
+            return lote;
+        } catch (DataIntegrityViolationException e) {
+            // Algún evento inválido: se insertan de a uno y se descartan los que fallan
+            List<AuditLog> insertados = new ArrayList<>(lote.size());
+            for (int i = 0; i < lote.size(); i++) {
+                AuditLog evento = lote.get(i);
+                try {
+                    jdbcTemplate.update(INSERT, evento.getUsername(), evento.getAction(), evento.getEntityType(),
+                            evento.getEntityId(), evento.getDetails(), Timestamp.valueOf(evento.getTimestamp()),
+                            evento.getIpAddress());
+                    escritos.increment();
+                    insertados.add(evento);
+                } catch (DataIntegrityViolationException invalido) {
+                    log.error("Evento de auditoría descartado ({} {} {}): {}", evento.getUsername(),
+                            evento.getAction(), evento.getEntityType(), invalido.getMessage());
+                } catch (DataAccessException caida) {
+                    log.warn("No se pudo escribir la auditoría en la base, se guarda en disco: {}", caida.getMessage());
+                    desbordar(lote.subList(i, lote.size()));
+                    break;
+                }
+            }
+            return insertados;
+        } catch (DataAccessException e) {
+            log.warn("No se pudo escribir la auditoría en la base, se guarda en disco: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void desbordar(List<AuditLog> eventos) {
+        Path archivo = directorioDesborde.resolve(PREFIJO_DESBORDE + LocalDate.now() + ".jsonl");
+        synchronized (bloqueoDesborde) {
+            try (BufferedWriter writer = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (AuditLog evento : eventos) {
+                    writer.write(serializar(evento));
+                    writer.newLine();
+                }
+                hayDesborde = true;
+                desbordados.increment(eventos.size());
+            } catch (IOException e) {
+                log.error("Se perdieron {} eventos de auditoría: {}", eventos.size(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Vuelve a insertar los eventos guardados en disco. Después de cada lote
+     * insertado el archivo se reescribe con lo que falta, así que un error
+     * posterior no vuelve a insertar los lotes anteriores; se borra cuando todos
+     * sus lotes llegaron a la base. Las líneas que no se pueden leer (por ejemplo
+     * una línea cortada por una caída a mitad de escritura) se apartan a un
+     * archivo {@code .rechazado} y no detienen el resto.
+     */
+    void reprocesarDesborde() throws IOException {
+        List<Path> archivos = new ArrayList<>();
+        synchronized (bloqueoDesborde) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directorioDesborde, PREFIJO_DESBORDE + "*")) {
+                for (Path archivo : stream) {
+                    // Se renombra para que los nuevos desbordes vayan a otro archivo
+                    Path enProceso = archivo.resolveSibling(PREFIJO_REPROCESO + archivo.getFileName());
+                    Files.move(archivo, enProceso);
+                    archivos.add(enProceso);
+                }
+            }
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directorioDesborde, PREFIJO_REPROCESO + "*.jsonl")) {
+                for (Path archivo : stream) {
+                    if (!archivos.contains(archivo)) {
+                        archivos.add(archivo);
+                    }
+                }
+            }
+            hayDesborde = false;
+        }
+
+        try {
+            for (Path archivo : archivos) {
+                if (!reprocesarArchivo(archivo)) {
+                    hayDesborde = true;
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Lo que quedó en el archivo se reintenta en la próxima vuelta
+            hayDesborde = true;
+            throw e;
+        }
+    }
+
+    /**
+     * @return false si la base sigue sin responder y hay que reintentar más tarde
+     */
+    private boolean reprocesarArchivo(Path archivo) throws IOException {
+        List<String> lineas = Files.readAllLines(archivo, StandardCharsets.UTF_8).stream()
+                .filter(linea -> !linea.isBlank())
+                .toList();
+        int reprocesados = 0;
+        for (int desde = 0; desde < lineas.size(); desde += tamanioLote) {
+            List<String> bloque = lineas.subList(desde, Math.min(desde + tamanioLote, lineas.size()));
+            List<AuditLog> lote = new ArrayList<>(bloque.size());
+            List<String> rechazadas = new ArrayList<>();
+            for (String linea : bloque) {
+                try {
+                    lote.add(leer(linea));
+                } catch (IOException | RuntimeException e) {
+                    log.error("Línea de auditoría ilegible en {}, se aparta: {}", archivo.getFileName(), e.getMessage());
+                    rechazadas.add(linea);
+                }
+            }
+            if (!lote.isEmpty() && !insertar(lote)) {
+                // La base sigue sin responder: se conserva sólo lo que falta insertar
+                Files.write(archivo, lineas.subList(desde, lineas.size()), StandardCharsets.UTF_8);
+                return false;
+            }
+            if (!rechazadas.isEmpty()) {
+                Files.write(archivo.resolveSibling(archivo.getFileName() + ".rechazado"), rechazadas,
+                        StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            reprocesados += lote.size();
+            Files.write(archivo, lineas.subList(Math.min(desde + tamanioLote, lineas.size()), lineas.size()),
+                    StandardCharsets.UTF_8);
+        }
+        Files.deleteIfExists(archivo);
+        log.info("Se reprocesaron {} eventos de auditoría desde {}", reprocesados, archivo.getFileName());
+        return true;
+    }
+
+    private String serializar(AuditLog evento) throws IOException {
+        return objectMapper.writeValueAsString(new String[]{
+                evento.getUsername(), evento.getAction(), evento.getEntityType(), evento.getEntityId(),
+                evento.getDetails(), evento.getTimestamp().toString(), evento.getIpAddress()});
+    }
+
+    private AuditLog leer(String linea) throws IOException {
+        String[] campos = objectMapper.readValue(linea, String[].class);
+        AuditLog evento = new AuditLog(campos[0], campos[1], campos[2], campos[3], campos[4]);
+        evento.setTimestamp(LocalDateTime.parse(campos[5]));
+        evento.setIpAddress(campos[6]);
+        return evento;
+    }
+
+    public int getEnCola() {
+        return enCola.get();
+    }
+
+    /**
+     * Detiene el hilo y escribe lo que quede en la cola antes de cerrar.
+     */
+    @PreDestroy
+    public void cerrar() {
+        activo = false;
+        LockSupport.unpark(hilo);
+        try {
+            hilo.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        while (vaciarLote()) {
+            // vaciarLote inserta o vuelca a disco cada lote
+        }
+        log.info("Escritor de auditoría detenido");
+    }
+
+}
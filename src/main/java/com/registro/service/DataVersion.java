@@ -0,0 +1,39 @@
+package com.registro.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versión de los datos de inventario (usuarios y equipos). Cada escritura la
+ * incrementa, de modo que los artefactos calculados con una versión anterior
+ * dejan de ser válidos.
+ */
+@Component
+public class DataVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    public long actual() {
+        return version.get();
+    }
+
+    /**
+     * Incrementa la versión. Dentro de una transacción el incremento se difiere
+     * al commit, para que nadie asocie la versión nueva a datos todavía no visibles.
+     */
+    public void incrementar() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    version.incrementAndGet();
+                }
+            });
+        } else {
+            version.incrementAndGet();
+        }
+    }
+}
@@ -1,14 +1,24 @@
 // src/main/java/com/registro/service/EquipoInformaticoService.java
 package com.registro.service;
 
+import com.registro.config.SearchIndexInitializer;
+import com.registro.dto.CursorPage;
+import com.registro.dto.CursorToken;
+import com.registro.dto.EquipoEstadisticas;
 import com.registro.model.EquipoInformatico;
 import com.registro.model.HistorialAsignacion;
+import com.registro.model.Site;
 import com.registro.model.Usuario;
+import com.registro.repository.EquipoInformaticoSpecifications;
 import com.registro.repository.HistorialAsignacionRepository;
 import com.registro.repository.IEquipoInformaticoRepository;
 import com.registro.repository.IUsuarioRepository;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
@@ -16,43 +26,126 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.stream.Collectors;
+import java.util.LinkedHashMap;
 
 @Service
 @Transactional
+@Slf4j
 public class EquipoInformaticoService {
 
     private final IEquipoInformaticoRepository equipoRepository;
     private final IUsuarioRepository usuarioRepository;
     private final HistorialAsignacionRepository historialAsignacionRepository;
+    private final SearchIndexInitializer searchIndex;
+    private final NumeroSerieFilter numeroSerieFilter;
+    private final DataVersion dataVersion;
+    private final EstadisticasService estadisticasService;
 
     public EquipoInformaticoService(IEquipoInformaticoRepository equipoRepository,
                                    IUsuarioRepository usuarioRepository,
-                                   HistorialAsignacionRepository historialAsignacionRepository) {
+                                   HistorialAsignacionRepository historialAsignacionRepository,
+                                   SearchIndexInitializer searchIndex,
+                                   NumeroSerieFilter numeroSerieFilter,
+                                   DataVersion dataVersion,
+                                   EstadisticasService estadisticasService) {
         this.equipoRepository = equipoRepository;
         this.usuarioRepository = usuarioRepository;
         this.historialAsignacionRepository = historialAsignacionRepository;
+        this.searchIndex = searchIndex;
+        this.numeroSerieFilter = numeroSerieFilter;
+        this.dataVersion = dataVersion;
+        this.estadisticasService = estadisticasService;
     }
 
+    /**
+     * Estadísticas de equipos calculadas en una sola consulta agrupada
+     */
+    @Transactional(readOnly = true)
+    public EquipoEstadisticas obtenerEstadisticas() {
+        EquipoEstadisticas estadisticas = new EquipoEstadisticas();
+        for (IEquipoInformaticoRepository.ConteoSiteEstado fila : equipoRepository.contarPorSiteYEstado()) {
+            estadisticas.acumular(fila.getSite(), fila.getEstado(),
+                    valor(fila.getTotal()), valor(fila.getActivos()), valor(fila.getAsignados()));
+        }
+        return estadisticas;
+    }
+
+    /**
+     * Resumen de equipos agrupado por site y tipo, calculado con una consulta agregada.
+     * Devuelve site → tipo → contadores (total, activos, dadosDeBaja, enReparacion,
+     * enMantenimiento, asignados, disponibles).
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Map<String, Map<String, Object>>> obtenerResumenPorSiteYTipo() {
+        Map<String, Map<String, Map<String, Object>>> resumen = new LinkedHashMap<>();
+        for (IEquipoInformaticoRepository.ConteoSiteTipo fila : equipoRepository.contarPorSiteYTipo()) {
+            String siteName = fila.getSite() != null ? fila.getSite().getLabel() : "Sin ubicación";
+            String tipoEquipo = fila.getTipo() != null ? fila.getTipo().getLabel() : "Sin especificar";
+
+            Map<String, Object> tipoData = resumen.computeIfAbsent(siteName, k -> new LinkedHashMap<>())
+                    .computeIfAbsent(tipoEquipo, k -> {
+                        Map<String, Object> data = new HashMap<>();
+                        data.put("total", 0);
+                        data.put("activos", 0);
+                        data.put("dadosDeBaja", 0);
+                        data.put("enReparacion", 0);
+                        data.put("enMantenimiento", 0);
+                        data.put("asignados", 0);
+                        data.put("disponibles", 0);
+                        return data;
+                    });
+
+            int total = (int) valor(fila.getTotal());
+            int asignados = (int) valor(fila.getAsignados());
+            sumar(tipoData, "total", total);
+            sumar(tipoData, "activos", (int) valor(fila.getActivos()));
+            sumar(tipoData, "asignados", asignados);
+            sumar(tipoData, "disponibles", total - asignados);
+
+            if (fila.getEstado() != null) {
+                switch (fila.getEstado()) {
+                    case DADO_DE_BAJA:
+                        sumar(tipoData, "dadosDeBaja", total);
+                        break;
+                    case EN_REPARACION:
+                        sumar(tipoData, "enReparacion", total);
+                        break;
+                    case EN_MANTENIMIENTO:
+                        sumar(tipoData, "enMantenimiento", total);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return resumen;
+    }
+
+    /**
+     * Conteos de equipos por site del usuario, tipo, estado y marca en una consulta agrupada.
+     */
+    @Transactional(readOnly = true)
+    public List<IEquipoInformaticoRepository.ConteoSiteTipoMarca> contarPorSiteTipoYMarca() {
+        return equipoRepository.contarPorSiteTipoYMarca();
+    }
+
+    private static void sumar(Map<String, Object> datos, String clave, int cantidad) {
+        datos.put(clave, (Integer) datos.get(clave) + cantidad);
+    }
+
+    private static long valor(Long numero) {
+        return numero != null ? numero : 0L;
+    }
+
+    @Transactional(readOnly = true)
     public Map<String, Object> getEquipoStatistics() {
         Map<String, Object> stats = new HashMap<>();
-        List<EquipoInformatico> allEquipos = equipoRepository.findAll();
-
-        // 1. Conteo total por estado
-        Map<EquipoInformatico.EstadoEquipo, Long> countByStatus = allEquipos.stream()
-                .collect(Collectors.groupingBy(EquipoInformatico::getEstado, Collectors.counting()));
-
-        // 2. Estadísticas por Site
-        Map<String, Map<String, Long>> statsBySite = allEquipos.stream()
-                .filter(e -> e.getSite() != null)
-                .collect(Collectors.groupingBy(e -> e.getSite().getLabel(),
-                        Collectors.groupingBy(e -> e.getEstado().name(), Collectors.counting())));
-
-        stats.put("totalEquipos", (long) allEquipos.size());
-        stats.put("countByStatus", countByStatus);
-        stats.put("statsBySite", statsBySite);
-        stats.put("allEquipos", allEquipos);
-        stats.put("sites", allEquipos.stream().map(EquipoInformatico::getSite).distinct().collect(Collectors.toList()));
+        EquipoEstadisticas estadisticas = obtenerEstadisticas();
+
+        stats.put("totalEquipos", estadisticas.getTotalEquipos());
+        stats.put("countByStatus", estadisticas.getConteoPorEstado());
+        stats.put("statsBySite", estadisticas.getConteoPorSite());
+        stats.put("sites", estadisticas.getSites());
         stats.put("tiposEquipo", EquipoInformatico.TipoEquipo.values());
 
         return stats;
@@ -79,6 +172,7 @@ public class EquipoInformaticoService {
         equipo.setUsuario(usuario);
         
         equipo = equipoRepository.save(equipo);
+        numeroSerieFilter.registrar(equipo.getNumeroSerie());
 
         // Crear registro en el historial
         HistorialAsignacion historial = new HistorialAsignacion();
@@ -88,7 +182,8 @@ public class EquipoInformaticoService {
         // AsignadoPor podría venir del contexto de seguridad
         // historial.setAsignadoPor(SecurityContextHolder.getContext().getAuthentication().getName());
         historialAsignacionRepository.save(historial);
-
+        dataVersion.incrementar();
+        estadisticasService.equipoCambiado(null, EstadisticasService.EquipoEstado.de(equipo));
 
         return equipo;
     }
@@ -101,6 +196,7 @@ public class EquipoInformaticoService {
                 .orElseThrow(() -> new RuntimeException("Equipo no encontrado: " + equipoId));
         Usuario usuario = usuarioRepository.findByLegajo(legajoUsuario)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado: " + legajoUsuario));
+        EstadisticasService.EquipoEstado antes = EstadisticasService.EquipoEstado.de(equipo);
 
         // 1. Cerrar registro de historial anterior si existe
         historialAsignacionRepository.findOpenByEquipoInformatico(equipo).ifPresent(historial -> {
@@ -119,6 +215,8 @@ public class EquipoInformaticoService {
         nuevoHistorial.setUsuario(usuario);
         nuevoHistorial.setFechaAsignacion(LocalDateTime.now());
         historialAsignacionRepository.save(nuevoHistorial);
+        dataVersion.incrementar();
+        estadisticasService.equipoCambiado(antes, EstadisticasService.EquipoEstado.de(equipo));
 
         return equipo;
     }
@@ -129,6 +227,7 @@ public class EquipoInformaticoService {
     public EquipoInformatico desasignarEquipo(Long equipoId) {
         EquipoInformatico equipo = equipoRepository.findById(equipoId)
                 .orElseThrow(() -> new RuntimeException("Equipo no encontrado: " + equipoId));
+        EstadisticasService.EquipoEstado antes = EstadisticasService.EquipoEstado.de(equipo);
 
         // 1. Cerrar registro de historial actual
         historialAsignacionRepository.findOpenByEquipoInformatico(equipo).ifPresent(historial -> {
@@ -140,7 +239,10 @@ public class EquipoInformaticoService {
         equipo.setUsuario(null);
         equipo.setFechaAsignacion(null);
         
-        return equipoRepository.save(equipo);
+        EquipoInformatico desasignado = equipoRepository.save(equipo);
+        dataVersion.incrementar();
+        estadisticasService.equipoCambiado(antes, EstadisticasService.EquipoEstado.de(desasignado));
+        return desasignado;
     }
 
     /**
@@ -151,6 +253,7 @@ public class EquipoInformaticoService {
                                              EquipoInformatico.EstadoEquipo estado, String observaciones) {
         EquipoInformatico equipo = equipoRepository.findById(equipoId)
                 .orElseThrow(() -> new RuntimeException("Equipo no encontrado: " + equipoId));
+        EstadisticasService.EquipoEstado antes = EstadisticasService.EquipoEstado.de(equipo);
 
         equipo.setTipo(tipo);
         equipo.setMarca(marca);
@@ -160,7 +263,11 @@ public class EquipoInformaticoService {
         equipo.setEstado(estado);
         equipo.setObservaciones(observaciones);
 
-        return equipoRepository.save(equipo);
+        EquipoInformatico actualizado = equipoRepository.save(equipo);
+        numeroSerieFilter.registrar(actualizado.getNumeroSerie());
+        dataVersion.incrementar();
+        estadisticasService.equipoCambiado(antes, EstadisticasService.EquipoEstado.de(actualizado));
+        return actualizado;
     }
 
     /**
@@ -173,6 +280,7 @@ public class EquipoInformaticoService {
         
         // Obtener el equipo antes de eliminarlo
         EquipoInformatico equipo = obtenerEquipoPorId(equipoId);
+        EstadisticasService.EquipoEstado antes = EstadisticasService.EquipoEstado.de(equipo);
         
         // Si el equipo está asignado a un usuario, desasignarlo primero
         if (equipo.getUsuario() != null) {
@@ -182,6 +290,8 @@ public class EquipoInformaticoService {
         
         // Ahora eliminar el equipo
         equipoRepository.deleteById(equipoId);
+        dataVersion.incrementar();
+        estadisticasService.equipoCambiado(antes, null);
     }
 
     /**
@@ -207,29 +317,88 @@ public class EquipoInformaticoService {
     }
 
     /**
-     * Verificar si un número de serie ya existe
+     * Verificar si un número de serie ya existe.
+     * El filtro de Bloom descarta la mayoría de los negativos sin consultar la base.
      */
+    @Transactional(readOnly = true)
     public boolean existeNumeroSerie(String numeroSerie) {
-        return equipoRepository.findAll().stream()
-                .anyMatch(equipo -> numeroSerie.equals(equipo.getNumeroSerie()));
+        if (numeroSerie == null || numeroSerie.isEmpty()) {
+            return false;
+        }
+        if (!numeroSerieFilter.puedeExistir(numeroSerie)) {
+            return false;
+        }
+        return equipoRepository.existsByNumeroSerie(numeroSerie);
     }
 
     /**
      * Guardar un equipo (crear o actualizar)
      */
     public EquipoInformatico guardarEquipo(EquipoInformatico equipo) {
-        return equipoRepository.save(equipo);
+        boolean nuevo = equipo.getId() == null;
+        EquipoInformatico guardado = equipoRepository.save(equipo);
+        numeroSerieFilter.registrar(guardado.getNumeroSerie());
+        dataVersion.incrementar();
+        if (nuevo) {
+            estadisticasService.equipoCambiado(null, EstadisticasService.EquipoEstado.de(guardado));
+        } else {
+            // No se conoce el estado anterior del equipo: se recalcula desde la base
+            estadisticasService.invalidar();
+        }
+        return guardado;
     }
 
     /**
-     * Obtener equipos con filtros y paginación
+     * Obtener equipos con filtros y paginación.
+     * Los filtros se traducen a predicados en la consulta y en su count.
      */
+    @Transactional(readOnly = true)
     public Page<EquipoInformatico> obtenerEquiposConFiltros(String buscar, String filtroSite, 
                                                            String filtroEstado, String filtroActivo, 
                                                            Pageable pageable) {
-        // Por ahora retornamos todos los equipos paginados
-        // TODO: Implementar filtros específicos en el repositorio
-        return equipoRepository.findAll(pageable);
+        Site site = parsearEnum(Site.class, filtroSite);
+        EquipoInformatico.EstadoEquipo estado = parsearEnum(EquipoInformatico.EstadoEquipo.class, filtroEstado);
+        Boolean activo = (filtroActivo == null || filtroActivo.isBlank()) ? null : Boolean.valueOf(filtroActivo.trim());
+
+        return equipoRepository.findAll(
+                EquipoInformaticoSpecifications.conFiltros(buscar, site, estado, activo), pageable);
+    }
+
+    /**
+     * Página del inventario para la pantalla de estado general. Todos los filtros
+     * se resuelven en la base; nunca se carga el inventario completo.
+     *
+     * @param filtroAsignacion "asignado", "disponible" o vacío
+     */
+    @Transactional(readOnly = true)
+    public Page<EquipoInformatico> obtenerEquiposEstado(String buscar, String filtroSite, String filtroTipo,
+                                                       String filtroEstado, String filtroAsignacion,
+                                                       Pageable pageable) {
+        Boolean asignado = null;
+        if ("asignado".equalsIgnoreCase(filtroAsignacion)) {
+            asignado = Boolean.TRUE;
+        } else if ("disponible".equalsIgnoreCase(filtroAsignacion)) {
+            asignado = Boolean.FALSE;
+        }
+
+        Specification<EquipoInformatico> spec = EquipoInformaticoSpecifications.conFiltros(buscar,
+                        parsearEnum(Site.class, filtroSite),
+                        parsearEnum(EquipoInformatico.EstadoEquipo.class, filtroEstado), null)
+                .and(EquipoInformaticoSpecifications.conTipo(parsearEnum(EquipoInformatico.TipoEquipo.class, filtroTipo)))
+                .and(EquipoInformaticoSpecifications.conAsignacion(asignado));
+        return equipoRepository.findAll(spec, pageable);
+    }
+
+    private static <E extends Enum<E>> E parsearEnum(Class<E> tipo, String valor) {
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(tipo, valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Filtro inválido para {}: {}", tipo.getSimpleName(), valor);
+            return null;
+        }
     }
 
     /**
@@ -243,36 +412,28 @@ public class EquipoInformaticoService {
      * Contar equipos activos
      */
     public long contarEquiposActivos() {
-        return equipoRepository.findAll().stream()
-                .filter(equipo -> equipo.getActivo() != null && equipo.getActivo())
-                .count();
+        return equipoRepository.countByActivoTrue();
     }
 
     /**
      * Contar equipos asignados a usuarios
      */
     public long contarEquiposAsignados() {
-        return equipoRepository.findAll().stream()
-                .filter(equipo -> equipo.getUsuario() != null)
-                .count();
+        return equipoRepository.countByUsuarioIsNotNull();
     }
 
     /**
      * Contar equipos disponibles (no asignados)
      */
     public long contarEquiposDisponibles() {
-        return equipoRepository.findAll().stream()
-                .filter(equipo -> equipo.getUsuario() == null)
-                .count();
+        return equipoRepository.countByUsuarioIsNull();
     }
 
     /**
      * Contar equipos dados de baja
      */
     public long contarEquiposDadosDeBaja() {
-        return equipoRepository.findAll().stream()
-                .filter(equipo -> equipo.getEstado() == EquipoInformatico.EstadoEquipo.DADO_DE_BAJA)
-                .count();
+        return equipoRepository.countByEstado(EquipoInformatico.EstadoEquipo.DADO_DE_BAJA);
     }
 
     /**
@@ -283,21 +444,44 @@ public class EquipoInformaticoService {
     }
 
     /**
-     * Buscar equipos por término de búsqueda con paginación
+     * Buscar equipos por término de búsqueda con paginación.
+     * Con índices trigram disponibles, los resultados se ordenan por relevancia.
      */
     public Page<EquipoInformatico> buscarEquipos(String termino, String filtroTipo, Pageable pageable) {
-        EquipoInformatico.TipoEquipo tipoEnum = null;
-        if (filtroTipo != null && !filtroTipo.isEmpty()) {
-            try {
-                tipoEnum = EquipoInformatico.TipoEquipo.valueOf(filtroTipo.toUpperCase());
-            } catch (IllegalArgumentException e) {
-                // Log the error or handle it as appropriate, e.g., ignore invalid type
-                System.err.println("Tipo de equipo inválido: " + filtroTipo);
-            }
+        EquipoInformatico.TipoEquipo tipoEnum = parsearEnum(EquipoInformatico.TipoEquipo.class, filtroTipo);
+        if (termino != null && !termino.isBlank() && searchIndex.isTrigramDisponible()) {
+            Pageable porRelevancia = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+            return equipoRepository.buscarPorSimilitud(termino.trim().toLowerCase(),
+                    tipoEnum != null ? tipoEnum.name() : null, porRelevancia);
         }
         return equipoRepository.findBySearchTerm(termino, tipoEnum, pageable);
     }
 
+    /**
+     * Buscar equipos con paginación por clave (fechaRegistro, id).
+     * El costo de cada página no depende de su profundidad.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<EquipoInformatico> buscarEquiposPorCursor(String termino, String filtroTipo,
+                                                                String cursor, int size) {
+        LocalDate fecha = null;
+        Long id = null;
+        if (cursor != null && !cursor.isBlank()) {
+            CursorToken token = CursorToken.decode(cursor);
+            fecha = token.getClaveComoFecha();
+            id = token.getId();
+        }
+
+        Specification<EquipoInformatico> spec = EquipoInformaticoSpecifications.contieneTexto(termino)
+                .and(EquipoInformaticoSpecifications.conTipo(parsearEnum(EquipoInformatico.TipoEquipo.class, filtroTipo)))
+                .and(EquipoInformaticoSpecifications.anteriorA(fecha, id));
+        Sort orden = Sort.by(Sort.Direction.DESC, "fechaRegistro").and(Sort.by(Sort.Direction.DESC, "id"));
+
+        List<EquipoInformatico> filas = equipoRepository.findBy(spec,
+                q -> q.sortBy(orden).limit(size + 1).all());
+        return CursorPage.of(filas, size, e -> CursorToken.encode(e.getFechaRegistro(), e.getId()));
+    }
+
     /**
      * Obtener el historial de asignaciones de un equipo.
      */
@@ -0,0 +1,652 @@
+package com.registro.service;
+
+import com.registro.dto.UsuarioResumen;
+import com.registro.model.EquipoInformatico;
+import com.registro.model.Site;
+import com.registro.model.Usuario;
+import com.registro.repository.IEquipoInformaticoRepository;
+import com.registro.repository.IUsuarioRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Modelo de lectura de las estadísticas de usuarios y equipos.
+ * Los contadores se cargan de la base una vez y luego se actualizan con cada
+ * alta, modificación, asignación o baja confirmada en {@link EquipoInformaticoService},
+ * {@link UsuarioService} y {@link ArchivoService}. Una reconciliación periódica
+ * (y cualquier cambio que no se pueda aplicar de forma incremental, como borrar
+ * un usuario con sus equipos en cascada) los vuelve a calcular desde la base.
+ */
+@Service
+@Slf4j
+public class EstadisticasService {
+
+    private final IUsuarioRepository usuarioRepository;
+    private final IEquipoInformaticoRepository equipoRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Equipos por (site del usuario asignado, tipo, estado, marca). */
+    private Map<ClaveEquipo, Long> equipos = new HashMap<>();
+    /** Usuarios por id, con sus cantidades de equipos y archivos. */
+    private Map<Long, ContadorUsuario> usuarios = new HashMap<>();
+    private volatile boolean cargado = false;
+    private volatile boolean invalidado = false;
+    /** Cantidad de eventos aplicados; permite detectar cambios durante una recarga. */
+    private final AtomicLong eventos = new AtomicLong();
+
+    private static final int MAX_INTENTOS_RECARGA = 3;
+    /** Serializa las recargas: una sola consulta a la vez, el resto espera su resultado. */
+    private final ReentrantLock recarga = new ReentrantLock();
+    private final AtomicLong recargasCompletadas = new AtomicLong();
+
+    /** Series disponibles en {@link #getSeries(Collection)}. */
+    public static final List<String> SERIES = List.of(
+            "equipos-por-tipo", "equipos-por-estado", "equipos-por-site", "top-marcas",
+            "usuarios-por-site", "usuarios-con-equipos", "usuarios-con-archivos");
+
+    public EstadisticasService(IUsuarioRepository usuarioRepository,
+                               IEquipoInformaticoRepository equipoRepository) {
+        this.usuarioRepository = usuarioRepository;
+        this.equipoRepository = equipoRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void precargar() {
+        recargar();
+    }
+
+    /**
+     * Recalcula los contadores desde la base de datos con dos consultas agrupadas.
+     * Si mientras tanto se aplicó algún evento, se conserva el modelo incremental
+     * y se deja la reconciliación para la próxima vuelta. Si el modelo estaba
+     * invalidado no hay modelo incremental que conservar: se vuelve a consultar
+     * hasta obtener una foto sin eventos concurrentes.
+     * Sólo una recarga corre a la vez; las demás esperan a que termine.
+     */
+    @Scheduled(fixedDelayString = "${estadisticas.reconciliacion-ms:300000}",
+               initialDelayString = "${estadisticas.reconciliacion-ms:300000}")
+    public void recargar() {
+        recarga.lock();
+        try {
+            for (int intento = 1; intento <= MAX_INTENTOS_RECARGA; intento++) {
+                if (cargarDesdeBase(intento == MAX_INTENTOS_RECARGA)) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("No se pudieron cargar las estadísticas: {}", e.getMessage());
+        } finally {
+            recargasCompletadas.incrementAndGet();
+            recarga.unlock();
+        }
+    }
+
+    /**
+     * Una pasada de carga.
+     *
+     * @param ultimoIntento si hubo eventos concurrentes, instala igual la foto pero
+     *                      deja el modelo invalidado para que la próxima lectura recargue
+     * @return false si hay que volver a intentar
+     */
+    private boolean cargarDesdeBase(boolean ultimoIntento) {
+        long eventosAntes = eventos.get();
+
+        Map<Long, ContadorUsuario> nuevosUsuarios = new HashMap<>();
+        for (UsuarioResumen resumen : usuarioRepository.findResumenes()) {
+            nuevosUsuarios.put(resumen.getId(), new ContadorUsuario(resumen));
+        }
+        Map<ClaveEquipo, Long> nuevosEquipos = new HashMap<>();
+        for (IEquipoInformaticoRepository.ConteoSiteTipoMarca fila : equipoRepository.contarPorSiteTipoYMarca()) {
+            ClaveEquipo clave = new ClaveEquipo(fila.getSite(), fila.getTipo(), fila.getEstado(), fila.getMarca());
+            nuevosEquipos.merge(clave, fila.getTotal() != null ? fila.getTotal() : 0L, Long::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            boolean huboEventos = eventos.get() != eventosAntes;
+            boolean vigente = cargado && !invalidado;
+            if (vigente && huboEventos) {
+                log.debug("Reconciliación de estadísticas descartada: hubo cambios durante la recarga");
+                return true;
+            }
+            if (!vigente && huboEventos && !ultimoIntento) {
+                log.debug("Hubo cambios durante la recarga de estadísticas; se vuelve a consultar");
+                return false;
+            }
+            boolean distinto = !nuevosEquipos.equals(equipos) || !nuevosUsuarios.equals(usuarios);
+            if (vigente && distinto) {
+                log.info("Reconciliación de estadísticas corrigió diferencias con la base de datos");
+            }
+            equipos = nuevosEquipos;
+            usuarios = nuevosUsuarios;
+            cargado = true;
+            invalidado = huboEventos;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==================== Eventos (se aplican al confirmar la transacción) ====================
+
+    /**
+     * Registra el alta, modificación o baja de un equipo.
+     *
+     * @param antes   estado previo del equipo, o null si es un alta
+     * @param despues estado nuevo del equipo, o null si es una baja
+     */
+    public void equipoCambiado(EquipoEstado antes, EquipoEstado despues) {
+        alConfirmar(() -> {
+            if (antes != null) {
+                sumarEquipo(antes, -1);
+            }
+            if (despues != null) {
+                sumarEquipo(despues, 1);
+            }
+        });
+    }
+
+    /**
+     * Registra el alta o modificación de un usuario. Un cambio de site mueve
+     * todos sus equipos de site, por lo que se recalcula desde la base.
+     */
+    public void usuarioGuardado(Usuario usuario) {
+        Long id = usuario.getId();
+        String legajo = usuario.getLegajo();
+        String nombreCompleto = usuario.getNombre() + " " + usuario.getApellido();
+        Site site = usuario.getSite();
+        alConfirmar(() -> {
+            ContadorUsuario actual = usuarios.get(id);
+            if (actual == null) {
+                usuarios.put(id, new ContadorUsuario(legajo, nombreCompleto, site));
+            } else if (actual.site != site && actual.equipos > 0) {
+                invalidado = true;
+            } else {
+                actual.legajo = legajo;
+                actual.nombreCompleto = nombreCompleto;
+                actual.site = site;
+            }
+        });
+    }
+
+    /**
+     * Registra la baja de un usuario. Sus equipos y archivos se borran en cascada,
+     * así que se recalcula desde la base.
+     */
+    public void usuarioEliminado() {
+        alConfirmar(() -> invalidado = true);
+    }
+
+    /**
+     * Registra archivos agregados (delta positivo) o eliminados (negativo) de un usuario.
+     */
+    public void archivosCambiados(Long usuarioId, int delta) {
+        alConfirmar(() -> {
+            ContadorUsuario contador = usuarios.get(usuarioId);
+            if (contador == null) {
+                invalidado = true;
+            } else {
+                contador.archivos = Math.max(0, contador.archivos + delta);
+            }
+        });
+    }
+
+    /**
+     * Marca el modelo para recalcularlo en la próxima lectura.
+     */
+    public void invalidar() {
+        alConfirmar(() -> invalidado = true);
+    }
+
+    private void sumarEquipo(EquipoEstado estado, int delta) {
+        equipos.merge(new ClaveEquipo(estado.site, estado.tipo, estado.estado, estado.marca), (long) delta,
+                (a, b) -> a + b == 0 ? null : a + b);
+        if (estado.usuarioId != null) {
+            ContadorUsuario contador = usuarios.get(estado.usuarioId);
+            if (contador == null) {
+                invalidado = true;
+            } else {
+                contador.equipos = Math.max(0, contador.equipos + delta);
+            }
+        }
+    }
+
+    /**
+     * Ejecuta la actualización después del commit (o en el momento si no hay
+     * transacción), bajo el lock de escritura.
+     */
+    private void alConfirmar(Runnable cambio) {
+        Runnable aplicar = () -> {
+            lock.writeLock().lock();
+            try {
+                cambio.run();
+                eventos.incrementAndGet();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    aplicar.run();
+                }
+            });
+        } else {
+            aplicar.run();
+        }
+    }
+
+    // ==================== Lecturas ====================
+
+    /**
+     * Si el modelo no está vigente, recarga o espera la recarga en curso. Quien
+     * esperó no repite la consulta: usa la foto que dejó la recarga que terminó.
+     */
+    private void asegurarVigente() {
+        if (cargado && !invalidado) {
+            return;
+        }
+        long vistas = recargasCompletadas.get();
+        recarga.lock();
+        try {
+            if ((!cargado || invalidado) && recargasCompletadas.get() == vistas) {
+                recargar();
+            }
+        } finally {
+            recarga.unlock();
+        }
+    }
+
+    /**
+     * Calcula las series pedidas (ver {@link #SERIES}) en una sola pasada sobre los
+     * contadores de equipos y otra sobre los de usuarios, bajo el mismo lock de
+     * lectura, de modo que todas corresponden a la misma versión.
+     * Lanza RuntimeException si alguna serie no existe.
+     *
+     * @return serie → (etiqueta → cantidad), en el orden pedido
+     */
+    public Map<String, Map<String, Long>> getSeries(Collection<String> nombres) {
+        for (String nombre : nombres) {
+            if (!SERIES.contains(nombre)) {
+                throw new RuntimeException("Serie no soportada: " + nombre);
+            }
+        }
+        asegurarVigente();
+        lock.readLock().lock();
+        try {
+            Map<String, Long> porTipo = new HashMap<>();
+            Map<String, Long> porEstado = new HashMap<>();
+            Map<String, Long> porSite = new HashMap<>();
+            Map<String, Long> porMarca = new HashMap<>();
+            for (Map.Entry<ClaveEquipo, Long> conteo : equipos.entrySet()) {
+                ClaveEquipo clave = conteo.getKey();
+                Long cantidad = conteo.getValue();
+                if (clave.tipo != null) {
+                    porTipo.merge(clave.tipo.getLabel(), cantidad, Long::sum);
+                }
+                if (clave.estado != null) {
+                    porEstado.merge(clave.estado.name(), cantidad, Long::sum);
+                }
+                if (clave.site != null) {
+                    porSite.merge(clave.site.name(), cantidad, Long::sum);
+                }
+                if (clave.marca != null && !clave.marca.trim().isEmpty()) {
+                    porMarca.merge(clave.marca, cantidad, Long::sum);
+                }
+            }
+
+            Map<String, Long> usuariosPorSite = new HashMap<>();
+            long conEquipos = 0;
+            long conArchivos = 0;
+            for (ContadorUsuario usuario : usuarios.values()) {
+                if (usuario.site != null) {
+                    usuariosPorSite.merge(usuario.site.name(), 1L, Long::sum);
+                }
+                if (usuario.equipos > 0) {
+                    conEquipos++;
+                }
+                if (usuario.archivos > 0) {
+                    conArchivos++;
+                }
+            }
+            Map<String, Long> usuariosConEquipos = new LinkedHashMap<>();
+            usuariosConEquipos.put("Con Equipos", conEquipos);
+            usuariosConEquipos.put("Sin Equipos", usuarios.size() - conEquipos);
+            Map<String, Long> usuariosConArchivos = new LinkedHashMap<>();
+            usuariosConArchivos.put("Con Archivos", conArchivos);
+            usuariosConArchivos.put("Sin Archivos", usuarios.size() - conArchivos);
+
+            Map<String, Map<String, Long>> resultado = new LinkedHashMap<>();
+            for (String nombre : nombres) {
+                switch (nombre) {
+                    case "equipos-por-tipo":
+                        resultado.put(nombre, porTipo);
+                        break;
+                    case "equipos-por-estado":
+                        resultado.put(nombre, porEstado);
+                        break;
+                    case "equipos-por-site":
+                        resultado.put(nombre, porSite);
+                        break;
+                    case "top-marcas":
+                        resultado.put(nombre, ordenarDesc(porMarca, 5));
+                        break;
+                    case "usuarios-por-site":
+                        resultado.put(nombre, usuariosPorSite);
+                        break;
+                    case "usuarios-con-equipos":
+                        resultado.put(nombre, usuariosConEquipos);
+                        break;
+                    case "usuarios-con-archivos":
+                        resultado.put(nombre, usuariosConArchivos);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getTotalEquipos() {
+        asegurarVigente();
+        lock.readLock().lock();
+        try {
+            return equipos.values().stream().mapToLong(Long::longValue).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getTotalUsuarios() {
+        asegurarVigente();
+        lock.readLock().lock();
+        try {
+            return usuarios.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Usuarios por site (nombre del enum).
+     */
+    public Map<String, Long> getUsuariosPorSite() {
+        asegurarVigente();
+        lock.readLock().lock();
+        try {
+            return usuarios.values().stream()
+                    .filter(u -> u.site != null)
+                    .collect(Collectors.groupingBy(u -> u.site.name(), Collectors.counting()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Equipos por site del usuario asignado (nombre del enum).
+     */
+    public Map<String, Long> getEquiposPorSite() {
+        return sumarEquipos(c -> c.site != null ? c.site.name() : null);
+    }
+
+    /**
+     * Equipos por tipo (nombre del enum).
+     */
+    public Map<String, Long> getEquiposPorTipo() {
+        return sumarEquipos(c -> c.tipo != null ? c.tipo.name() : null);
+    }
+
+    /**
+     * Equipos por tipo (etiqueta legible).
+     */
+    public Map<String, Long> getEquiposPorTipoLabel() {
+        return sumarEquipos(c -> c.tipo != null ? c.tipo.getLabel() : null);
+    }
+
+    /**
+     * Equipos por estado (nombre del enum).
+     */
+    public Map<String, Long> getEquiposPorEstado() {
+        return sumarEquipos(c -> c.estado != null ? c.estado.name() : null);
+    }
+
+    /**
+     * Las marcas con más equipos, de mayor a menor.
+     */
+    public Map<String, Long> getTopMarcas(int limite) {
+        return ordenarDesc(sumarEquipos(c -> c.marca != null && !c.marca.trim().isEmpty() ? c.marca : null), limite);
+    }
+
+    /**
+     * Estadísticas detalladas de cada site con usuarios: usuarios, equipos,
+     * usuarios con equipos, tipos, marcas y promedio de equipos por usuario.
+     */
+    public Map<String, Map<String, Object>> getEstadisticasPorSite() {
+        asegurarVigente();
+        lock.readLock().lock();
+        try {
+            Map<String, Map<String, Object>> resultado = new LinkedHashMap<>();
+            Map<Site, List<ContadorUsuario>> usuariosPorSite = usuarios.values().stream()
+                    .filter(u -> u.site != null)
+                    .collect(Collectors.groupingBy(u -> u.site));
+
+            for (Map.Entry<Site, List<ContadorUsuario>> entrada : usuariosPorSite.entrySet()) {
+                Site site = entrada.getKey();
+                List<ContadorUsuario> usuariosSite = entrada.getValue();
+
+                long equiposSite = 0;
+                Map<String, Long> tiposEnSite = new HashMap<>();
+                Map<String, Long> marcasEnSite = new HashMap<>();
+                for (Map.Entry<ClaveEquipo, Long> conteo : equipos.entrySet()) {
+                    ClaveEquipo clave = conteo.getKey();
+                    if (clave.site != site) {
+                        continue;
+                    }
+                    equiposSite += conteo.getValue();
+                    if (clave.tipo != null) {
+                        tiposEnSite.merge(clave.tipo.name(), conteo.getValue(), Long::sum);
+                    }
+                    if (clave.marca != null && !clave.marca.trim().isEmpty()) {
+                        marcasEnSite.merge(clave.marca, conteo.getValue(), Long::sum);
+                    }
+                }
+                long usuariosConEquipos = usuariosSite.stream().filter(u -> u.equipos > 0).count();
+
+                Map<String, Object> siteStats = new HashMap<>();
+                siteStats.put("usuarios", usuariosSite.size());
+                siteStats.put("equipos", (int) equiposSite);
+                siteStats.put("usuariosConEquipos", usuariosConEquipos);
+                siteStats.put("tiposEquipo", tiposEnSite);
+                siteStats.put("marcas", marcasEnSite);
+                siteStats.put("promedioEquiposPorUsuario",
+                        usuariosSite.size() > 0 ? (double) equiposSite / usuariosSite.size() : 0.0);
+                resultado.put(site.name(), siteStats);
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Los usuarios con más equipos asignados (nombre, legajo, cantidadEquipos, site).
+     */
+    public List<Map<String, Object>> getUsuariosConMasEquipos(int limite) {
+        asegurarVigente();
+        lock.readLock().lock();
+        try {
+            return usuarios.values().stream()
+                    .filter(u -> u.equipos > 0)
+                    .sorted(Comparator.comparingLong((ContadorUsuario u) -> u.equipos).reversed())
+                    .limit(limite)
+                    .map(u -> {
+                        Map<String, Object> usuarioData = new HashMap<>();
+                        usuarioData.put("nombre", u.nombreCompleto);
+                        usuarioData.put("legajo", u.legajo);
+                        usuarioData.put("cantidadEquipos", (int) u.equipos);
+                        usuarioData.put("site", u.site != null ? u.site.name() : "Sin asignar");
+                        return usuarioData;
+                    })
+                    .collect(Collectors.toCollection(ArrayList::new));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getUsuariosConEquipos() {
+        asegurarVigente();
+        lock.readLock().lock();
+        try {
+            return usuarios.values().stream().filter(u -> u.equipos > 0).count();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getUsuariosConArchivos() {
+        asegurarVigente();
+        lock.readLock().lock();
+        try {
+            return usuarios.values().stream().filter(u -> u.archivos > 0).count();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<String, Long> sumarEquipos(java.util.function.Function<ClaveEquipo, String> agrupador) {
+        asegurarVigente();
+        lock.readLock().lock();
+        try {
+            Map<String, Long> resultado = new HashMap<>();
+            for (Map.Entry<ClaveEquipo, Long> conteo : equipos.entrySet()) {
+                String grupo = agrupador.apply(conteo.getKey());
+                if (grupo != null) {
+                    resultado.merge(grupo, conteo.getValue(), Long::sum);
+                }
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Map<String, Long> ordenarDesc(Map<String, Long> conteos, int limite) {
+        return conteos.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(limite)
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        Map.Entry::getValue,
+                        (e1, e2) -> e1,
+                        LinkedHashMap::new
+                ));
+    }
+
+    // ==================== Tipos internos ====================
+
+    /**
+     * Datos de un equipo que afectan a las estadísticas, tomados antes o después de un cambio.
+     */
+    public static final class EquipoEstado {
+        private final Long usuarioId;
+        private final Site site;
+        private final EquipoInformatico.TipoEquipo tipo;
+        private final EquipoInformatico.EstadoEquipo estado;
+        private final String marca;
+
+        private EquipoEstado(EquipoInformatico equipo) {
+            this.usuarioId = equipo.getUsuario() != null ? equipo.getUsuario().getId() : null;
+            this.site = equipo.getUsuario() != null ? equipo.getUsuario().getSite() : null;
+            this.tipo = equipo.getTipo();
+            this.estado = equipo.getEstado();
+            this.marca = equipo.getMarca();
+        }
+
+        public static EquipoEstado de(EquipoInformatico equipo) {
+            return new EquipoEstado(equipo);
+        }
+    }
+
+    private static final class ClaveEquipo {
+        private final Site site;
+        private final EquipoInformatico.TipoEquipo tipo;
+        private final EquipoInformatico.EstadoEquipo estado;
+        private final String marca;
+
+        ClaveEquipo(Site site, EquipoInformatico.TipoEquipo tipo, EquipoInformatico.EstadoEquipo estado, String marca) {
+            this.site = site;
+            this.tipo = tipo;
+            this.estado = estado;
+            this.marca = marca;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ClaveEquipo)) return false;
+            ClaveEquipo otra = (ClaveEquipo) o;
+            return site == otra.site && tipo == otra.tipo && estado == otra.estado && Objects.equals(marca, otra.marca);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(site, tipo, estado, marca);
+        }
+    }
+
+    private static final class ContadorUsuario {
+        private String legajo;
+        private String nombreCompleto;
+        private Site site;
+        private long equipos;
+        private long archivos;
+
+        ContadorUsuario(String legajo, String nombreCompleto, Site site) {
+            this.legajo = legajo;
+            this.nombreCompleto = nombreCompleto;
+            this.site = site;
+        }
+
+        ContadorUsuario(UsuarioResumen resumen) {
+            this(resumen.getLegajo(), resumen.getNombre() + " " + resumen.getApellido(), resumen.getSite());
+            this.equipos = resumen.getCantidadEquipos();
+            this.archivos = resumen.getCantidadArchivos();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ContadorUsuario)) return false;
+            ContadorUsuario otro = (ContadorUsuario) o;
+            return equipos == otro.equipos && archivos == otro.archivos && site == otro.site
+                    && Objects.equals(legajo, otro.legajo) && Objects.equals(nombreCompleto, otro.nombreCompleto);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(legajo, nombreCompleto, site, equipos, archivos);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.registro.service;
+
+import com.registro.dto.ArchivoAlmacenado;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Optional;
+
+/**
+ * Almacenamiento de los archivos adjuntos de los usuarios. La implementación se
+ * elige con {@code almacenamiento.tipo}: {@code firebase} (por defecto) o
+ * {@code local} para desarrollo y pruebas de carga sin conexión.
+ */
+public interface FileStorage {
+
+    /**
+     * Guarda el contenido en la ruta indicada, reemplazando lo que hubiera.
+     *
+     * @return URL con la que se registra el archivo
+     */
+    String guardar(String ruta, InputStream contenido, String contentType) throws IOException;
+
+    /**
+     * Metadatos del objeto, o vacío si no existe.
+     */
+    Optional<ArchivoAlmacenado> obtener(String ruta) throws IOException;
+
+    /**
+     * Copia los bytes [desde, hasta] (inclusive) del objeto al stream sin cargarlo
+     * entero en memoria.
+     */
+    void transferir(ArchivoAlmacenado archivo, long desde, long hasta, OutputStream outputStream) throws IOException;
+
+    /**
+     * Elimina el objeto si existe.
+     */
+    void eliminar(String ruta) throws IOException;
+
+    /**
+     * URL con la que se registra el objeto guardado en la ruta indicada.
+     */
+    String url(String ruta);
+
+    /**
+     * Ruta del objeto a partir de la URL registrada, para archivos antiguos sin ruta guardada.
+     */
+    String rutaDesdeUrl(String url);
+}
@@ -0,0 +1,97 @@
+package com.registro.service;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Bucket;
+import com.google.firebase.cloud.StorageClient;
+import com.registro.dto.ArchivoAlmacenado;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Optional;
+
+/**
+ * Almacenamiento en el bucket de Firebase Storage.
+ */
+@Service
+@ConditionalOnProperty(name = "almacenamiento.tipo", havingValue = "firebase", matchIfMissing = true)
+public class FirebaseFileStorage implements FileStorage {
+
+    /** Tamaño de cada lectura del bucket y del buffer de copia en las descargas. */
+    private static final int TAMANIO_BLOQUE = 64 * 1024;
+
+    private static final String URL_PUBLICA = "https://storage.googleapis.com/%s/%s";
+
+    @Override
+    public String guardar(String ruta, InputStream contenido, String contentType) throws IOException {
+        bucket().create(ruta, contenido, contentType);
+        return url(ruta);
+    }
+
+    @Override
+    public Optional<ArchivoAlmacenado> obtener(String ruta) throws IOException {
+        Blob blob = bucket().get(ruta);
+        if (blob == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new ArchivoAlmacenado(ruta, blob.getSize(), blob.getContentType(),
+                String.valueOf(blob.getGeneration())));
+    }
+
+    /**
+     * Lee en bloques fijos desde el canal del objeto. La lectura queda fijada a la
+     * generación obtenida, así que un archivo reemplazado a mitad de una descarga
+     * reanudada no mezcla versiones.
+     */
+    @Override
+    public void transferir(ArchivoAlmacenado archivo, long desde, long hasta, OutputStream outputStream) throws IOException {
+        Bucket bucket = bucket();
+        BlobId id = BlobId.of(bucket.getName(), archivo.getRuta(), Long.valueOf(archivo.getVersion()));
+        try (ReadChannel lector = bucket.getStorage().reader(id)) {
+            lector.setChunkSize(TAMANIO_BLOQUE);
+            lector.seek(desde);
+            lector.limit(hasta + 1);
+
+            WritableByteChannel destino = Channels.newChannel(outputStream);
+            ByteBuffer buffer = ByteBuffer.allocate(TAMANIO_BLOQUE);
+            while (lector.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    destino.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+        outputStream.flush();
+    }
+
+    @Override
+    public void eliminar(String ruta) throws IOException {
+        Blob blob = bucket().get(ruta);
+        if (blob != null) {
+            blob.delete();
+        }
+    }
+
+    @Override
+    public String url(String ruta) {
+        return String.format(URL_PUBLICA, bucket().getName(), ruta);
+    }
+
+    @Override
+    public String rutaDesdeUrl(String url) {
+        String prefix = "https://storage.googleapis.com/" + bucket().getName() + "/";
+        return url.substring(prefix.length());
+    }
+
+    private Bucket bucket() {
+        return StorageClient.getInstance().bucket();
+    }
+}
@@ -0,0 +1,13 @@
+package com.registro.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Escribe el contenido de un reporte en el stream recibido.
+ */
+@FunctionalInterface
+public interface GeneradorReporte {
+
+    void escribir(OutputStream outputStream) throws IOException;
+}
@@ -0,0 +1,105 @@
+package com.registro.service;
+
+import com.registro.dto.ArchivoAlmacenado;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+/**
+ * Almacenamiento en un directorio local, para desarrollo y pruebas de carga sin
+ * Firebase. Las subidas se copian con {@link Files#copy} a un temporal que luego
+ * se renombra; las descargas usan {@link FileChannel#transferTo}.
+ */
+@Service
+@ConditionalOnProperty(name = "almacenamiento.tipo", havingValue = "local")
+@Slf4j
+public class LocalFileStorage implements FileStorage {
+
+    private final Path raiz;
+
+    public LocalFileStorage(@Value("${almacenamiento.local.directorio:almacenamiento}") String directorio) throws IOException {
+        this.raiz = Files.createDirectories(Paths.get(directorio)).toAbsolutePath().normalize();
+        log.info("Almacenamiento de archivos local en {}", raiz);
+    }
+
+    @Override
+    public String guardar(String ruta, InputStream contenido, String contentType) throws IOException {
+        Path destino = resolver(ruta);
+        Files.createDirectories(destino.getParent());
+        Path temporal = Files.createTempFile(destino.getParent(), ".subida-", ".tmp");
+        try {
+            Files.copy(contenido, temporal, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        return url(ruta);
+    }
+
+    @Override
+    public Optional<ArchivoAlmacenado> obtener(String ruta) throws IOException {
+        Path archivo = resolver(ruta);
+        if (!Files.isRegularFile(archivo)) {
+            return Optional.empty();
+        }
+        BasicFileAttributes atributos = Files.readAttributes(archivo, BasicFileAttributes.class);
+        String contentType = Files.probeContentType(archivo);
+        String version = atributos.lastModifiedTime().toMillis() + "-" + atributos.size();
+        return Optional.of(new ArchivoAlmacenado(ruta, atributos.size(), contentType, version));
+    }
+
+    @Override
+    public void transferir(ArchivoAlmacenado archivo, long desde, long hasta, OutputStream outputStream) throws IOException {
+        try (FileChannel origen = FileChannel.open(resolver(archivo.getRuta()), StandardOpenOption.READ)) {
+            WritableByteChannel destino = Channels.newChannel(outputStream);
+            long posicion = desde;
+            long fin = Math.min(hasta + 1, origen.size());
+            while (posicion < fin) {
+                posicion += origen.transferTo(posicion, fin - posicion, destino);
+            }
+        }
+        outputStream.flush();
+    }
+
+    @Override
+    public void eliminar(String ruta) throws IOException {
+        Files.deleteIfExists(resolver(ruta));
+    }
+
+    @Override
+    public String url(String ruta) {
+        return resolver(ruta).toUri().toString();
+    }
+
+    @Override
+    public String rutaDesdeUrl(String url) {
+        return raiz.relativize(Paths.get(URI.create(url))).toString().replace('\\', '/');
+    }
+
+    /**
+     * Ruta absoluta dentro del directorio raíz; rechaza rutas que intenten salir de él.
+     */
+    private Path resolver(String ruta) {
+        Path archivo = raiz.resolve(ruta).normalize();
+        if (!archivo.startsWith(raiz)) {
+            throw new RuntimeException("Ruta de archivo inválida: " + ruta);
+        }
+        return archivo;
+    }
+}
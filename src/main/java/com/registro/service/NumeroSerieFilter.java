@@ -0,0 +1,155 @@
+package com.registro.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.registro.repository.IEquipoInformaticoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Filtro de Bloom con los números de serie registrados.
+ * Un resultado negativo es definitivo y evita la consulta a la base de datos;
+ * un positivo debe confirmarse con {@code existsByNumeroSerie}.
+ * Como el filtro no admite borrados, los equipos eliminados sólo generan
+ * falsos positivos (que la consulta descarta) hasta la próxima reconstrucción.
+ */
+@Component
+@Slf4j
+public class NumeroSerieFilter {
+
+    private static final double TASA_FALSOS_POSITIVOS = 0.01;
+    private static final int CAPACIDAD_MINIMA = 10_000;
+
+    private final IEquipoInformaticoRepository equipoRepository;
+
+    /** Protege el reemplazo del filtro y la lista de pendientes; nunca se retiene durante la consulta. */
+    private final Object cerrojo = new Object();
+
+    private volatile BloomFilter<CharSequence> filtro;
+    private volatile long capacidad;
+    private final AtomicLong insertados = new AtomicLong();
+
+    /**
+     * Números registrados mientras hay una reconstrucción en curso. La consulta de
+     * la reconstrucción puede no verlos, así que se agregan al filtro nuevo antes
+     * de publicarlo. Es null cuando no se está reconstruyendo.
+     */
+    private List<String> pendientes;
+
+    private final AtomicBoolean reconstruccionEnCurso = new AtomicBoolean();
+
+    public NumeroSerieFilter(IEquipoInformaticoRepository equipoRepository) {
+        this.equipoRepository = equipoRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void precargar() {
+        reconstruir();
+    }
+
+    /**
+     * Reconstruye el filtro a partir de los números de serie de la base de datos.
+     * Los registros concurrentes no se pierden: quedan en {@link #pendientes}.
+     */
+    public synchronized void reconstruir() {
+        synchronized (cerrojo) {
+            pendientes = new ArrayList<>();
+        }
+        try {
+            List<String> numerosSerie = equipoRepository.findAllNumerosSerie();
+            long nuevaCapacidad = Math.max(CAPACIDAD_MINIMA, numerosSerie.size() * 2L);
+            BloomFilter<CharSequence> nuevo = BloomFilter.create(
+                    Funnels.stringFunnel(StandardCharsets.UTF_8), nuevaCapacidad, TASA_FALSOS_POSITIVOS);
+            numerosSerie.forEach(nuevo::put);
+
+            int registradosDurante;
+            synchronized (cerrojo) {
+                pendientes.forEach(nuevo::put);
+                registradosDurante = pendientes.size();
+                pendientes = null;
+                insertados.set(numerosSerie.size() + (long) registradosDurante);
+                capacidad = nuevaCapacidad;
+                filtro = nuevo;
+            }
+            log.info("Filtro de números de serie cargado con {} elementos ({} registrados durante la carga)",
+                    numerosSerie.size(), registradosDurante);
+        } catch (Exception e) {
+            synchronized (cerrojo) {
+                pendientes = null;
+            }
+            log.warn("No se pudo cargar el filtro de números de serie: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Devuelve false sólo si el número de serie seguro no existe.
+     * Mientras el filtro no está cargado responde true para forzar la consulta.
+     */
+    public boolean puedeExistir(String numeroSerie) {
+        BloomFilter<CharSequence> actual = filtro;
+        return actual == null || actual.mightContain(numeroSerie);
+    }
+
+    /**
+     * Registra un número de serie creado o modificado. Dentro de una transacción
+     * el registro se difiere al commit, para no agregar números que terminan en rollback.
+     */
+    public void registrar(String numeroSerie) {
+        if (numeroSerie == null || numeroSerie.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    agregar(numeroSerie);
+                }
+            });
+        } else {
+            agregar(numeroSerie);
+        }
+    }
+
+    private void agregar(String numeroSerie) {
+        synchronized (cerrojo) {
+            if (pendientes != null) {
+                pendientes.add(numeroSerie);
+            }
+            BloomFilter<CharSequence> actual = filtro;
+            if (actual == null) {
+                return;
+            }
+            actual.put(numeroSerie);
+        }
+        if (insertados.incrementAndGet() > capacidad) {
+            // Superada la capacidad, la tasa de falsos positivos crece: reconstruir
+            // en segundo plano; mientras tanto el filtro actual sigue respondiendo
+            reconstruirEnSegundoPlano();
+        }
+    }
+
+    private void reconstruirEnSegundoPlano() {
+        if (!reconstruccionEnCurso.compareAndSet(false, true)) {
+            return;
+        }
+        Thread hilo = new Thread(() -> {
+            try {
+                reconstruir();
+            } finally {
+                reconstruccionEnCurso.set(false);
+            }
+        }, "reconstruccion-filtro-series");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+}
@@ -0,0 +1,215 @@
+package com.registro.service;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.canvas.parser.EventType;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfCanvasProcessor;
+import com.itextpdf.kernel.pdf.canvas.parser.data.IEventData;
+import com.itextpdf.kernel.pdf.canvas.parser.data.ImageRenderInfo;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.IEventListener;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Trabajos sobre el contenido de un archivo ya subido: miniaturas JPEG y
+ * compresión. No accede al almacenamiento; trabaja sobre una copia local.
+ */
+@Component
+@Slf4j
+public class ProcesadorArchivos {
+
+    /** Lado mayor de las miniaturas, en píxeles. */
+    public static final int LADO_MINIATURA = 240;
+
+    /** Por debajo de este tamaño no vale la pena comprimir. */
+    private static final long TAMANIO_MINIMO_COMPRESION = 4 * 1024;
+
+    /** La versión comprimida se guarda sólo si ocupa como mucho este porcentaje del original. */
+    private static final int PORCENTAJE_MAXIMO_COMPRIMIDO = 90;
+
+    private static final Set<String> TIPOS_COMPRIMIBLES = Set.of(
+            "application/json", "application/xml", "application/rtf", "application/x-tiff",
+            "image/bmp", "image/x-ms-bmp", "image/tiff", "image/svg+xml");
+
+    public boolean esComprimible(String contentType, long tamanio) {
+        if (contentType == null || tamanio < TAMANIO_MINIMO_COMPRESION) {
+            return false;
+        }
+        String tipo = tipoBase(contentType);
+        return tipo.startsWith("text/") || TIPOS_COMPRIMIBLES.contains(tipo);
+    }
+
+    /**
+     * Comprime el archivo con deflate (formato zlib) en un temporal.
+     *
+     * @return el temporal, o vacío si la compresión no ahorra lo suficiente
+     */
+    public Optional<Path> comprimir(Path original) throws IOException {
+        Path comprimido = Files.createTempFile("comprimido", ".deflate");
+        Deflater deflater = new Deflater();
+        try (OutputStream salida = new DeflaterOutputStream(Files.newOutputStream(comprimido), deflater, 64 * 1024)) {
+            Files.copy(original, salida);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(comprimido);
+            throw e;
+        } finally {
+            deflater.end();
+        }
+        long tamanioOriginal = Files.size(original);
+        if (Files.size(comprimido) * 100 > tamanioOriginal * PORCENTAJE_MAXIMO_COMPRIMIDO) {
+            Files.deleteIfExists(comprimido);
+            return Optional.empty();
+        }
+        return Optional.of(comprimido);
+    }
+
+    /**
+     * Miniatura JPEG de una imagen, o de la imagen principal de la primera página
+     * de un PDF escaneado. Vacío si el tipo no tiene vista previa o no se pudo leer.
+     */
+    public Optional<byte[]> generarMiniatura(Path archivo, String contentType) {
+        if (contentType == null) {
+            return Optional.empty();
+        }
+        String tipo = tipoBase(contentType);
+        try {
+            BufferedImage imagen = null;
+            if (tipo.startsWith("image/")) {
+                try (InputStream entrada = Files.newInputStream(archivo)) {
+                    imagen = leerReducida(entrada);
+                }
+            } else if ("application/pdf".equals(tipo)) {
+                byte[] imagenPagina = imagenPrincipalPrimeraPagina(archivo);
+                if (imagenPagina != null) {
+                    imagen = leerReducida(new ByteArrayInputStream(imagenPagina));
+                }
+            }
+            return imagen != null ? Optional.of(escribirJpeg(escalar(imagen))) : Optional.empty();
+        } catch (Exception e) {
+            log.debug("No se pudo generar la miniatura de {} ({}): {}", archivo, tipo, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Decodifica la imagen salteando píxeles, para no cargar en memoria un escaneo
+     * completo cuando sólo se necesita una miniatura.
+     */
+    private BufferedImage leerReducida(InputStream entrada) throws IOException {
+        try (ImageInputStream imagen = ImageIO.createImageInputStream(entrada)) {
+            if (imagen == null) {
+                return null;
+            }
+            Iterator<ImageReader> lectores = ImageIO.getImageReaders(imagen);
+            if (!lectores.hasNext()) {
+                return null;
+            }
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(imagen, true, true);
+                int ladoMayor = Math.max(lector.getWidth(0), lector.getHeight(0));
+                int salto = Math.max(1, ladoMayor / (LADO_MINIATURA * 2));
+                ImageReadParam parametros = lector.getDefaultReadParam();
+                parametros.setSourceSubsampling(salto, salto, 0, 0);
+                return lector.read(0, parametros);
+            } finally {
+                lector.dispose();
+            }
+        }
+    }
+
+    private BufferedImage escalar(BufferedImage imagen) {
+        double factor = Math.min(1.0, (double) LADO_MINIATURA / Math.max(imagen.getWidth(), imagen.getHeight()));
+        int ancho = Math.max(1, (int) Math.round(imagen.getWidth() * factor));
+        int alto = Math.max(1, (int) Math.round(imagen.getHeight() * factor));
+
+        // JPEG no tiene transparencia: se dibuja sobre fondo blanco
+        BufferedImage miniatura = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = miniatura.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, ancho, alto);
+            g.drawImage(imagen, 0, 0, ancho, alto, null);
+        } finally {
+            g.dispose();
+        }
+        return miniatura;
+    }
+
+    private byte[] escribirJpeg(BufferedImage imagen) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        if (!ImageIO.write(imagen, "jpg", salida)) {
+            throw new IOException("No hay codificador JPEG disponible");
+        }
+        return salida.toByteArray();
+    }
+
+    /**
+     * Bytes de la imagen de mayor superficie dibujada en la primera página. En un
+     * documento escaneado es la página misma; un PDF sin imágenes no tiene vista previa.
+     */
+    private byte[] imagenPrincipalPrimeraPagina(Path archivo) throws IOException {
+        try (PdfDocument pdf = new PdfDocument(new PdfReader(archivo.toFile()))) {
+            if (pdf.getNumberOfPages() == 0) {
+                return null;
+            }
+            MayorImagen listener = new MayorImagen();
+            new PdfCanvasProcessor(listener).processPageContent(pdf.getFirstPage());
+            return listener.bytes;
+        }
+    }
+
+    private static String tipoBase(String contentType) {
+        int separador = contentType.indexOf(';');
+        return (separador >= 0 ? contentType.substring(0, separador) : contentType).trim().toLowerCase();
+    }
+
+    private static class MayorImagen implements IEventListener {
+        private float superficie;
+        private byte[] bytes;
+
+        @Override
+        public void eventOccurred(IEventData data, EventType type) {
+            if (type != EventType.RENDER_IMAGE) {
+                return;
+            }
+            PdfImageXObject imagen = ((ImageRenderInfo) data).getImage();
+            if (imagen == null) {
+                return;
+            }
+            float actual = imagen.getWidth() * imagen.getHeight();
+            if (actual > superficie) {
+                superficie = actual;
+                bytes = imagen.getImageBytes();
+            }
+        }
+
+        @Override
+        public Set<EventType> getSupportedEvents() {
+            return Set.of(EventType.RENDER_IMAGE);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.registro.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché en disco de reportes ya generados, indexada por tipo de reporte y
+ * {@link DataVersion}. Mientras los datos no cambian se sirve el archivo
+ * existente; al superar el tamaño máximo se descartan los menos usados.
+ */
+@Service
+@Slf4j
+public class ReportCacheService {
+
+    private final DataVersion dataVersion;
+    private final Path directorio;
+    private final long maxBytes;
+
+    /** Entradas en orden de acceso (la primera es la menos usada). */
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Object> bloqueos = new ConcurrentHashMap<>();
+    private long bytesTotales;
+
+    private final Counter aciertos;
+    private final Counter fallos;
+    private final Counter descartes;
+
+    public ReportCacheService(DataVersion dataVersion,
+                              MeterRegistry meterRegistry,
+                              @Value("${reportes.cache.max-mb:256}") long maxMb) throws IOException {
+        this.dataVersion = dataVersion;
+        this.maxBytes = maxMb * 1024 * 1024;
+        this.directorio = Files.createTempDirectory("reportes-cache");
+
+        this.aciertos = Counter.builder("reportes.cache.solicitudes").tag("resultado", "acierto").register(meterRegistry);
+        this.fallos = Counter.builder("reportes.cache.solicitudes").tag("resultado", "fallo").register(meterRegistry);
+        this.descartes = Counter.builder("reportes.cache.descartes").register(meterRegistry);
+        Gauge.builder("reportes.cache.bytes", this, ReportCacheService::getBytesTotales).register(meterRegistry);
+    }
+
+    /**
+     * Escribe el reporte en el stream, generándolo sólo si no hay uno en caché
+     * para la versión actual de los datos.
+     */
+    public void escribir(String clave, GeneradorReporte generador, OutputStream outputStream) throws IOException {
+        try (FileChannel origen = abrir(clave, generador)) {
+            WritableByteChannel destino = Channels.newChannel(outputStream);
+            long tamanio = origen.size();
+            long posicion = 0;
+            while (posicion < tamanio) {
+                posicion += origen.transferTo(posicion, tamanio - posicion, destino);
+            }
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * Devuelve un canal abierto sobre el artefacto. Se abre antes de soltar el
+     * bloqueo para que un descarte concurrente no borre el archivo antes de leerlo.
+     */
+    private FileChannel abrir(String clave, GeneradorReporte generador) throws IOException {
+        long version = dataVersion.actual();
+        String id = clave + "@" + version;
+
+        synchronized (bloqueos.computeIfAbsent(clave, k -> new Object())) {
+            Entrada entrada;
+            synchronized (this) {
+                entrada = entradas.get(id);
+            }
+            if (entrada != null && Files.exists(entrada.archivo)) {
+                aciertos.increment();
+                return FileChannel.open(entrada.archivo, StandardOpenOption.READ);
+            }
+
+            fallos.increment();
+            Path archivo = directorio.resolve(clave + "-" + version + "-" + System.nanoTime());
+            try (OutputStream salida = new BufferedOutputStream(Files.newOutputStream(archivo))) {
+                generador.escribir(salida);
+            } catch (IOException | RuntimeException e) {
+                borrar(archivo);
+                throw e;
+            }
+
+            FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ);
+            registrar(clave, id, new Entrada(clave, archivo, canal.size()));
+            log.debug("Reporte {} generado y guardado en caché ({} bytes)", id, canal.size());
+            return canal;
+        }
+    }
+
+    private synchronized void registrar(String clave, String id, Entrada nueva) {
+        // Las versiones anteriores del mismo reporte ya no se pueden servir
+        Iterator<Map.Entry<String, Entrada>> it = entradas.entrySet().iterator();
+        while (it.hasNext()) {
+            Entrada entrada = it.next().getValue();
+            if (entrada.clave.equals(clave)) {
+                it.remove();
+                descartar(entrada);
+            }
+        }
+
+        entradas.put(id, nueva);
+        bytesTotales += nueva.tamanio;
+
+        it = entradas.entrySet().iterator();
+        while (bytesTotales > maxBytes && it.hasNext()) {
+            Entrada entrada = it.next().getValue();
+            if (entrada == nueva) {
+                break;
+            }
+            it.remove();
+            descartar(entrada);
+            descartes.increment();
+        }
+    }
+
+    private void descartar(Entrada entrada) {
+        bytesTotales -= entrada.tamanio;
+        borrar(entrada.archivo);
+    }
+
+    public synchronized long getBytesTotales() {
+        return bytesTotales;
+    }
+
+    /**
+     * Estado de la caché para el panel de administración.
+     */
+    public synchronized Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("entradas", entradas.size());
+        stats.put("bytes", bytesTotales);
+        stats.put("maxBytes", maxBytes);
+        stats.put("aciertos", (long) aciertos.count());
+        stats.put("fallos", (long) fallos.count());
+        stats.put("descartes", (long) descartes.count());
+        stats.put("versionDatos", dataVersion.actual());
+        return stats;
+    }
+
+    private void borrar(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            log.warn("No se pudo borrar el reporte en caché {}: {}", archivo, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void cerrar() {
+        entradas.values().forEach(entrada -> borrar(entrada.archivo));
+        entradas.clear();
+        borrar(directorio);
+    }
+
+    private static class Entrada {
+        private final String clave;
+        private final Path archivo;
+        private final long tamanio;
+
+        Entrada(String clave, Path archivo, long tamanio) {
+            this.clave = clave;
+            this.archivo = archivo;
+            this.tamanio = tamanio;
+        }
+    }
+}
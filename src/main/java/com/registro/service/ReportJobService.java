@@ -0,0 +1,218 @@
+package com.registro.service;
+
+import com.registro.dto.ReportJob;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cola de trabajos de reportes. Los reportes se generan en un pool acotado,
+ * fuera de los hilos de Tomcat, y se escriben en archivos temporales que luego
+ * se descargan con {@link FileChannel#transferTo}. Dos pedidos iguales mientras
+ * el primero sigue en curso comparten el mismo trabajo.
+ */
+@Service
+@Slf4j
+public class ReportJobService {
+
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+    private final Path directorio;
+    private final long retencionMinutos;
+
+    private final Map<String, ReportJob> trabajos = new ConcurrentHashMap<>();
+    private final Map<String, ReportJob> enCursoPorClave = new ConcurrentHashMap<>();
+
+    public ReportJobService(PlatformTransactionManager transactionManager,
+                            @Value("${reportes.jobs.hilos:2}") int hilos,
+                            @Value("${reportes.jobs.capacidad-cola:20}") int capacidadCola,
+                            @Value("${reportes.jobs.retencion-minutos:30}") long retencionMinutos) throws IOException {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.retencionMinutos = retencionMinutos;
+        this.directorio = Files.createTempDirectory("reportes");
+
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                runnable -> {
+                    Thread hilo = new Thread(runnable, "reportes-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Encola la generación de un reporte. Si ya hay un trabajo en curso con la
+     * misma clave se devuelve ése en lugar de generar otro; el solicitante queda
+     * registrado en el trabajo para poder consultarlo y descargarlo.
+     */
+    public ReportJob enviar(String clave, String nombreArchivo, String contentType, String solicitante,
+                            GeneradorReporte generador) {
+        purgarVencidos();
+
+        ReportJob[] nuevo = new ReportJob[1];
+        ReportJob trabajo = enCursoPorClave.compute(clave, (k, actual) -> {
+            if (actual != null && actual.isEnCurso()) {
+                actual.agregarSolicitante(solicitante);
+                return actual;
+            }
+            nuevo[0] = new ReportJob(clave, nombreArchivo, contentType);
+            nuevo[0].agregarSolicitante(solicitante);
+            return nuevo[0];
+        });
+
+        if (nuevo[0] == null) {
+            log.debug("Reporte {} ya en curso, se reutiliza el trabajo {}", clave, trabajo.getId());
+            return trabajo;
+        }
+
+        trabajos.put(trabajo.getId(), trabajo);
+        try {
+            executor.execute(() -> ejecutar(trabajo, generador));
+        } catch (RejectedExecutionException e) {
+            trabajos.remove(trabajo.getId());
+            enCursoPorClave.remove(clave, trabajo);
+            throw new RuntimeException("La cola de reportes está llena, intente nuevamente en unos minutos");
+        }
+        return trabajo;
+    }
+
+    /**
+     * Devuelve el trabajo sólo si el usuario lo pidió o es administrador.
+     * Para cualquier otro usuario el trabajo no existe.
+     */
+    public Optional<ReportJob> obtener(String id, String username, boolean administrador) {
+        return Optional.ofNullable(trabajos.get(id))
+                .filter(trabajo -> administrador || trabajo.esSolicitante(username));
+    }
+
+    /**
+     * Copia el artefacto de un trabajo completado al stream de salida
+     * usando transferencia directa entre canales.
+     */
+    public void transferir(ReportJob trabajo, OutputStream outputStream) throws IOException {
+        if (trabajo.getEstado() != ReportJob.Estado.COMPLETADO) {
+            throw new RuntimeException("El reporte todavía no está disponible");
+        }
+        try (FileChannel origen = FileChannel.open(trabajo.getArchivo(), StandardOpenOption.READ)) {
+            WritableByteChannel destino = Channels.newChannel(outputStream);
+            long tamanio = origen.size();
+            long posicion = 0;
+            while (posicion < tamanio) {
+                posicion += origen.transferTo(posicion, tamanio - posicion, destino);
+            }
+        }
+        outputStream.flush();
+    }
+
+    public long tamanio(ReportJob trabajo) throws IOException {
+        return Files.size(trabajo.getArchivo());
+    }
+
+    private void ejecutar(ReportJob trabajo, GeneradorReporte generador) {
+        Path archivo = directorio.resolve(trabajo.getId());
+        trabajo.iniciar(archivo);
+        try {
+            try (OutputStream salida = new ContadorOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(archivo)), trabajo)) {
+                // Sesión de solo lectura para las cargas perezosas fuera del hilo de la petición
+                transactionTemplate.executeWithoutResult(status -> {
+                    try {
+                        generador.escribir(salida);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e.getMessage(), e);
+                    }
+                });
+            }
+            trabajo.completar();
+            log.info("Reporte {} generado ({} bytes)", trabajo.getClave(), trabajo.getBytesEscritos());
+        } catch (Exception e) {
+            log.error("Error generando reporte {}: {}", trabajo.getClave(), e.getMessage(), e);
+            trabajo.fallar(e.getMessage());
+            borrar(archivo);
+        } finally {
+            enCursoPorClave.remove(trabajo.getClave(), trabajo);
+        }
+    }
+
+    private void purgarVencidos() {
+        LocalDateTime limite = LocalDateTime.now().minusMinutes(retencionMinutos);
+        trabajos.values().removeIf(trabajo -> {
+            boolean vencido = !trabajo.isEnCurso()
+                    && trabajo.getFinalizado() != null
+                    && trabajo.getFinalizado().isBefore(limite);
+            if (vencido && trabajo.getArchivo() != null) {
+                borrar(trabajo.getArchivo());
+            }
+            return vencido;
+        });
+    }
+
+    private void borrar(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            log.warn("No se pudo borrar el archivo temporal {}: {}", archivo, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        executor.shutdownNow();
+        trabajos.values().stream()
+                .map(ReportJob::getArchivo)
+                .filter(archivo -> archivo != null)
+                .forEach(this::borrar);
+        borrar(directorio);
+    }
+
+    /**
+     * Stream que registra en el trabajo los bytes escritos, usado como progreso.
+     */
+    private static class ContadorOutputStream extends FilterOutputStream {
+
+        private final ReportJob trabajo;
+
+        ContadorOutputStream(OutputStream out, ReportJob trabajo) {
+            super(out);
+            this.trabajo = trabajo;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            trabajo.sumarBytes(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            trabajo.sumarBytes(len);
+        }
+    }
+}
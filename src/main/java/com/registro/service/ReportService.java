@@ -1,18 +1,23 @@
 package com.registro.service;
 
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.ss.util.CellRangeAddress;
+import com.registro.dto.ReportSnapshot;
 import com.registro.model.EquipoInformatico;
 import com.registro.model.Site;
 import com.registro.model.Usuario;
 import com.registro.repository.IEquipoInformaticoRepository;
 import com.registro.repository.IUsuarioRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -26,27 +31,53 @@ public class ReportService {
     @Autowired
     private IUsuarioRepository usuarioRepository;
 
-    public byte[] generateExcelReport() throws IOException {
-        Workbook workbook = new XSSFWorkbook();
-        
-        // Crear reporte ejecutivo general
-        createExecutiveSummarySheet(workbook);
-        
-        // Crear hojas profesionales detalladas por cada site
-        createDetailedSiteReports(workbook);
-        
-        // Crear consolidado de equipos por marca/modelo
-        createEquipmentSummarySheet(workbook);
+    /** Filas que SXSSF mantiene en memoria por hoja; el resto se vuelca a disco. */
+    private static final int VENTANA_FILAS = 100;
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        workbook.write(outputStream);
-        workbook.close();
-        
-        return outputStream.toByteArray();
+    /** Usuarios leídos por consulta al generar el PDF. */
+    private static final int BLOQUE_USUARIOS = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Genera el reporte Excel escribiéndolo directamente en el stream recibido.
+     * Usa SXSSF con una ventana acotada de filas, por lo que la memoria no crece
+     * con la cantidad de registros.
+     */
+    public void writeExcelReport(OutputStream outputStream) throws IOException {
+        // Usuarios y equipos se leen una sola vez y se indexan para todas las hojas
+        ReportSnapshot snapshot = crearSnapshot();
+        
+        SXSSFWorkbook workbook = new SXSSFWorkbook(VENTANA_FILAS);
+        try {
+            // Crear reporte ejecutivo general
+            createExecutiveSummarySheet(workbook, snapshot);
+            
+            // Crear hojas profesionales detalladas por cada site
+            createDetailedSiteReports(workbook, snapshot);
+            
+            // Crear consolidado de equipos por marca/modelo
+            createEquipmentSummarySheet(workbook, snapshot);
+
+            workbook.write(outputStream);
+        } finally {
+            workbook.close();
+            // Eliminar los archivos temporales de las filas volcadas
+            workbook.dispose();
+        }
     }
 
-    private void createExecutiveSummarySheet(Workbook workbook) {
+    /**
+     * Lee usuarios y equipos (con su usuario, vía fetch join) en dos consultas.
+     */
+    private ReportSnapshot crearSnapshot() {
+        return new ReportSnapshot(usuarioRepository.findAll(), equipoRepository.findAllConUsuario());
+    }
+    
+    private void createExecutiveSummarySheet(Workbook workbook, ReportSnapshot snapshot) {
         Sheet sheet = workbook.createSheet("📊 RESUMEN EJECUTIVO");
+        AnchoColumnas filas = new AnchoColumnas(sheet);
         
         CellStyle titleStyle = createExecutiveTitleStyle(workbook);
         CellStyle headerStyle = createHeaderStyle(workbook);
@@ -56,7 +87,7 @@ public class ReportService {
         int rowNum = 0;
         
         // Título principal del reporte
-        Row titleRow = sheet.createRow(rowNum++);
+        Row titleRow = filas.crear(rowNum++);
         Cell titleCell = titleRow.createCell(0);
         titleCell.setCellValue("REPORTE EJECUTIVO DEL SISTEMA DE EQUIPOS INFORMÁTICOS");
         titleCell.setCellStyle(titleStyle);
@@ -65,7 +96,7 @@ public class ReportService {
         rowNum++;
         
         // Fecha y hora del reporte
-        Row dateRow = sheet.createRow(rowNum++);
+        Row dateRow = filas.crear(rowNum++);
         Cell dateCell = dateRow.createCell(0);
         dateCell.setCellValue("Generado el: " + java.time.LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy 'a las' HH:mm 'hs'")));
         dateCell.setCellStyle(dataStyle);
@@ -74,7 +105,7 @@ public class ReportService {
         rowNum += 2;
         
         // Resumen general del sistema
-        Row generalHeaderRow = sheet.createRow(rowNum++);
+        Row generalHeaderRow = filas.crear(rowNum++);
         Cell generalHeaderCell = generalHeaderRow.createCell(0);
         generalHeaderCell.setCellValue("📈 RESUMEN GENERAL DEL SISTEMA");
         generalHeaderCell.setCellStyle(headerStyle);
@@ -83,14 +114,9 @@ public class ReportService {
         rowNum++;
         
         // Obtener totales generales
-        long totalEquipos = equipoRepository.count();
-        long totalUsuarios = usuarioRepository.count();
-        long usuariosConEquipos = equipoRepository.findAll().stream()
-            .map(EquipoInformatico::getUsuario)
-            .filter(Objects::nonNull)
-            .map(Usuario::getId)
-            .distinct()
-            .count();
+        long totalEquipos = snapshot.getTotalEquipos();
+        long totalUsuarios = snapshot.getTotalUsuarios();
+        long usuariosConEquipos = snapshot.getUsuariosConEquipos();
         
         // Mostrar totales
         String[] generalData = {
@@ -101,7 +127,7 @@ public class ReportService {
         };
         
         for (String data : generalData) {
-            Row dataRow = sheet.createRow(rowNum++);
+            Row dataRow = filas.crear(rowNum++);
             Cell dataCell = dataRow.createCell(1);
             dataCell.setCellValue(data);
             dataCell.setCellStyle(highlightStyle);
@@ -110,7 +136,7 @@ public class ReportService {
         rowNum += 2;
         
         // Resumen por sites
-        Row siteHeaderRow = sheet.createRow(rowNum++);
+        Row siteHeaderRow = filas.crear(rowNum++);
         Cell siteHeaderCell = siteHeaderRow.createCell(0);
         siteHeaderCell.setCellValue("🏢 DISTRIBUCIÓN POR SITES");
         siteHeaderCell.setCellStyle(headerStyle);
@@ -119,7 +145,7 @@ public class ReportService {
         rowNum++;
         
         // Encabezados de la tabla
-        Row tableHeaderRow = sheet.createRow(rowNum++);
+        Row tableHeaderRow = filas.crear(rowNum++);
         String[] tableHeaders = {"Site", "Usuarios Totales", "Usuarios con Equipos", "Total Equipos", "Equipos por Usuario", "Estado"};
         for (int i = 0; i < tableHeaders.length; i++) {
             Cell cell = tableHeaderRow.createCell(i);
@@ -128,24 +154,12 @@ public class ReportService {
         }
         
         // Datos por site
-        Map<Site, List<Usuario>> usuariosPorSite = usuarioRepository.findAll()
-            .stream()
-            .filter(usuario -> usuario.getSite() != null)
-            .collect(Collectors.groupingBy(Usuario::getSite));
-        
-        Map<Site, List<EquipoInformatico>> equiposPorSite = equipoRepository.findAll()
-            .stream()
-            .filter(equipo -> equipo.getUsuario() != null && equipo.getUsuario().getSite() != null)
-            .collect(Collectors.groupingBy(equipo -> equipo.getUsuario().getSite()));
-        
         for (Site site : Site.values()) {
-            List<Usuario> usuarios = usuariosPorSite.getOrDefault(site, new ArrayList<>());
-            List<EquipoInformatico> equipos = equiposPorSite.getOrDefault(site, new ArrayList<>());
-            Set<Usuario> usuariosConEquiposSite = equipos.stream()
-                .map(EquipoInformatico::getUsuario)
-                .collect(Collectors.toSet());
+            List<Usuario> usuarios = snapshot.getUsuarios(site);
+            List<EquipoInformatico> equipos = snapshot.getEquipos(site);
+            long usuariosConEquiposSite = snapshot.getUsuariosConEquipos(site);
             
-            Row siteRow = sheet.createRow(rowNum++);
+            Row siteRow = filas.crear(rowNum++);
             
             // Site
             Cell siteCell = siteRow.createCell(0);
@@ -159,7 +173,7 @@ public class ReportService {
             
             // Usuarios con equipos
             Cell usersWithEquipCell = siteRow.createCell(2);
-            usersWithEquipCell.setCellValue(usuariosConEquiposSite.size());
+            usersWithEquipCell.setCellValue(usuariosConEquiposSite);
             usersWithEquipCell.setCellStyle(dataStyle);
             
             // Total equipos
@@ -169,7 +183,7 @@ public class ReportService {
             
             // Equipos por usuario promedio
             Cell avgEquipCell = siteRow.createCell(4);
-            double promedio = usuariosConEquiposSite.size() > 0 ? (double) equipos.size() / usuariosConEquiposSite.size() : 0;
+            double promedio = usuariosConEquiposSite > 0 ? (double) equipos.size() / usuariosConEquiposSite : 0;
             avgEquipCell.setCellValue(String.format("%.1f", promedio));
             avgEquipCell.setCellStyle(dataStyle);
             
@@ -180,33 +194,21 @@ public class ReportService {
             statusCell.setCellStyle(dataStyle);
         }
         
-        // Ajustar ancho de columnas
-        for (int i = 0; i < 7; i++) {
-            sheet.autoSizeColumn(i);
-        }
+        // Ajustar ancho de columnas según el contenido registrado
+        filas.aplicar(7);
     }
     
-    private void createDetailedSiteReports(Workbook workbook) {
-        // Obtener datos agrupados por site
-        Map<Site, List<Usuario>> usuariosPorSite = usuarioRepository.findAll()
-            .stream()
-            .filter(usuario -> usuario.getSite() != null)
-            .collect(Collectors.groupingBy(Usuario::getSite));
-        
-        Map<Site, List<EquipoInformatico>> equiposPorSite = equipoRepository.findAll()
-            .stream()
-            .filter(equipo -> equipo.getUsuario() != null && equipo.getUsuario().getSite() != null)
-            .collect(Collectors.groupingBy(equipo -> equipo.getUsuario().getSite()));
-        
+    private void createDetailedSiteReports(Workbook workbook, ReportSnapshot snapshot) {
         for (Site site : Site.values()) {
-            List<Usuario> usuarios = usuariosPorSite.getOrDefault(site, new ArrayList<>());
-            List<EquipoInformatico> equipos = equiposPorSite.getOrDefault(site, new ArrayList<>());
+            List<Usuario> usuarios = snapshot.getUsuarios(site);
+            List<EquipoInformatico> equipos = snapshot.getEquipos(site);
             
             if (usuarios.isEmpty()) {
                 continue; // Saltar sites sin usuarios
             }
             
             Sheet sheet = workbook.createSheet("🏢 " + site.toString());
+            AnchoColumnas filas = new AnchoColumnas(sheet);
             CellStyle titleStyle = createExecutiveTitleStyle(workbook);
             CellStyle headerStyle = createHeaderStyle(workbook);
             CellStyle dataStyle = createDataStyle(workbook);
@@ -216,7 +218,7 @@ public class ReportService {
             int rowNum = 0;
             
             // Título del site
-            Row titleRow = sheet.createRow(rowNum++);
+            Row titleRow = filas.crear(rowNum++);
             Cell titleCell = titleRow.createCell(0);
             titleCell.setCellValue("REPORTE DETALLADO - " + site.toString());
             titleCell.setCellStyle(titleStyle);
@@ -225,26 +227,24 @@ public class ReportService {
             rowNum++;
             
             // Resumen del site - EXACTAMENTE LO QUE PEDISTE
-            Row summaryRow = sheet.createRow(rowNum++);
+            Row summaryRow = filas.crear(rowNum++);
             Cell summaryCell = summaryRow.createCell(0);
             summaryCell.setCellValue("📍 El site de " + site.toString() + " tiene " + usuarios.size() + " usuarios registrados");
             summaryCell.setCellStyle(highlightStyle);
             sheet.addMergedRegion(new CellRangeAddress(rowNum-1, rowNum-1, 0, 8));
             
             // Estadísticas adicionales del site
-            Row statsRow = sheet.createRow(rowNum++);
+            Row statsRow = filas.crear(rowNum++);
             Cell statsCell = statsRow.createCell(0);
-            Set<Usuario> usuariosConEquipos = equipos.stream()
-                .map(EquipoInformatico::getUsuario)
-                .collect(Collectors.toSet());
-            statsCell.setCellValue("📊 " + usuariosConEquipos.size() + " usuarios tienen equipos asignados (" + equipos.size() + " equipos en total)");
+            long usuariosConEquipos = snapshot.getUsuariosConEquipos(site);
+            statsCell.setCellValue("📊 " + usuariosConEquipos + " usuarios tienen equipos asignados (" + equipos.size() + " equipos en total)");
             statsCell.setCellStyle(dataStyle);
             sheet.addMergedRegion(new CellRangeAddress(rowNum-1, rowNum-1, 0, 8));
             
             rowNum += 2;
             
             // Sección de usuarios y equipos
-            Row sectionRow = sheet.createRow(rowNum++);
+            Row sectionRow = filas.crear(rowNum++);
             Cell sectionCell = sectionRow.createCell(0);
             sectionCell.setCellValue("👥 LISTADO DETALLADO DE USUARIOS Y SUS EQUIPOS");
             sectionCell.setCellStyle(sectionStyle);
@@ -253,7 +253,7 @@ public class ReportService {
             rowNum++;
             
             // Encabezados de la tabla
-            Row headerRow = sheet.createRow(rowNum++);
+            Row headerRow = filas.crear(rowNum++);
             String[] headers = {"Legajo", "Nombre Completo", "Email", "Teléfono", "Tipo Equipo", "Marca", "Modelo", "N° Serie", "Estado"};
             for (int i = 0; i < headers.length; i++) {
                 Cell cell = headerRow.createCell(i);
@@ -261,43 +261,36 @@ public class ReportService {
                 cell.setCellStyle(headerStyle);
             }
             
-            // Datos de usuarios y equipos - FORMATO PROFESIONAL
-            for (Usuario usuario : usuarios.stream()
-                    .sorted(Comparator.comparing(Usuario::getLegajo, Comparator.nullsLast(Comparator.naturalOrder())))
-                    .collect(Collectors.toList())) {
+            // Datos de usuarios y equipos - FORMATO PROFESIONAL (usuarios ya ordenados por legajo)
+            for (Usuario usuario : usuarios) {
                 
                 // Obtener equipos del usuario
-                List<EquipoInformatico> equiposUsuario = equipos.stream()
-                    .filter(equipo -> equipo.getUsuario() != null && equipo.getUsuario().getId().equals(usuario.getId()))
-                    .sorted(Comparator.comparing(e -> e.getTipo() != null ? e.getTipo().toString() : ""))
-                    .collect(Collectors.toList());
+                List<EquipoInformatico> equiposUsuario = snapshot.getEquipos(usuario);
                 
                 if (equiposUsuario.isEmpty()) {
                     // Usuario sin equipos
-                    Row row = sheet.createRow(rowNum++);
+                    Row row = filas.crear(rowNum++);
                     fillProfessionalUserData(row, usuario, null, dataStyle);
                 } else {
                     // Usuario con equipos - una fila por equipo
                     for (EquipoInformatico equipo : equiposUsuario) {
-                        Row row = sheet.createRow(rowNum++);
+                        Row row = filas.crear(rowNum++);
                         fillProfessionalUserData(row, usuario, equipo, dataStyle);
                     }
                 }
             }
             
-            // Ajustar ancho de columnas
-            for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
-            }
-            
             // Agregar resumen al final
             rowNum += 2;
-            Row finalSummaryRow = sheet.createRow(rowNum++);
+            Row finalSummaryRow = filas.crear(rowNum++);
             Cell finalSummaryCell = finalSummaryRow.createCell(0);
             finalSummaryCell.setCellValue("📋 Resumen: " + usuarios.size() + " usuarios, " + equipos.size() + " equipos, " + 
                 equipos.stream().map(EquipoInformatico::getMarca).filter(Objects::nonNull).collect(Collectors.toSet()).size() + " marcas diferentes");
             finalSummaryCell.setCellStyle(highlightStyle);
             sheet.addMergedRegion(new CellRangeAddress(rowNum-1, rowNum-1, 0, 8));
+            
+            // Ajustar ancho de columnas según el contenido registrado
+            filas.aplicar(headers.length);
         }
     }
     
@@ -357,8 +350,9 @@ public class ReportService {
         }
     }
     
-    private void createEquipmentSummarySheet(Workbook workbook) {
+    private void createEquipmentSummarySheet(Workbook workbook, ReportSnapshot snapshot) {
         Sheet sheet = workbook.createSheet("📦 RESUMEN DE EQUIPOS");
+        AnchoColumnas filas = new AnchoColumnas(sheet);
         
         CellStyle titleStyle = createExecutiveTitleStyle(workbook);
         CellStyle headerStyle = createHeaderStyle(workbook);
@@ -367,7 +361,7 @@ public class ReportService {
         int rowNum = 0;
         
         // Título
-        Row titleRow = sheet.createRow(rowNum++);
+        Row titleRow = filas.crear(rowNum++);
         Cell titleCell = titleRow.createCell(0);
         titleCell.setCellValue("RESUMEN CONSOLIDADO DE EQUIPOS POR MARCA Y MODELO");
         titleCell.setCellStyle(titleStyle);
@@ -376,7 +370,7 @@ public class ReportService {
         rowNum += 2;
         
         // Encabezados
-        Row headerRow = sheet.createRow(rowNum++);
+        Row headerRow = filas.crear(rowNum++);
         String[] headers = {"Marca", "Modelo", "Cantidad", "Sites", "Usuarios", "Estado Predominante"};
         for (int i = 0; i < headers.length; i++) {
             Cell cell = headerRow.createCell(i);
@@ -385,13 +379,7 @@ public class ReportService {
         }
         
         // Agrupar equipos por marca y modelo
-        Map<String, Map<String, List<EquipoInformatico>>> equiposPorMarcaModelo = equipoRepository.findAll()
-            .stream()
-            .filter(equipo -> equipo.getMarca() != null && equipo.getModelo() != null)
-            .collect(Collectors.groupingBy(
-                EquipoInformatico::getMarca,
-                Collectors.groupingBy(EquipoInformatico::getModelo)
-            ));
+        Map<String, Map<String, List<EquipoInformatico>>> equiposPorMarcaModelo = snapshot.getEquiposPorMarcaModelo();
         
         for (Map.Entry<String, Map<String, List<EquipoInformatico>>> marcaEntry : equiposPorMarcaModelo.entrySet()) {
             String marca = marcaEntry.getKey();
@@ -400,7 +388,7 @@ public class ReportService {
                 String modelo = modeloEntry.getKey();
                 List<EquipoInformatico> equipos = modeloEntry.getValue();
                 
-                Row row = sheet.createRow(rowNum++);
+                Row row = filas.crear(rowNum++);
                 
                 // Marca
                 Cell marcaCell = row.createCell(0);
@@ -451,10 +439,8 @@ public class ReportService {
             }
         }
         
-        // Ajustar ancho de columnas
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
-        }
+        // Ajustar ancho de columnas según el contenido registrado
+        filas.aplicar(headers.length);
     }
     
     // Estilos profesionales
@@ -520,6 +506,68 @@ public class ReportService {
         return style;
     }
 
+    /**
+     * Crea las filas de una hoja y registra el largo máximo de texto por columna.
+     * Reemplaza a autoSizeColumn, que en SXSSF no puede ver las filas ya volcadas a disco.
+     * Cada fila se mide al crear la siguiente (o al aplicar), cuando ya tiene sus celdas.
+     * Como autoSizeColumn, ignora las celdas combinadas.
+     */
+    private static class AnchoColumnas {
+        private static final int ANCHO_MAXIMO = 255 * 256;
+
+        private final Sheet sheet;
+        private final Map<Integer, Integer> maximos = new HashMap<>();
+        private Row pendiente;
+
+        AnchoColumnas(Sheet sheet) {
+            this.sheet = sheet;
+        }
+
+        Row crear(int rowNum) {
+            medir();
+            pendiente = sheet.createRow(rowNum);
+            return pendiente;
+        }
+
+        void aplicar(int columnas) {
+            medir();
+            for (int i = 0; i < columnas; i++) {
+                Integer largo = maximos.get(i);
+                if (largo != null) {
+                    sheet.setColumnWidth(i, Math.min(ANCHO_MAXIMO, (largo + 2) * 256));
+                }
+            }
+        }
+
+        private void medir() {
+            if (pendiente == null) {
+                return;
+            }
+            for (Cell cell : pendiente) {
+                if (cell.getCellType() != CellType.STRING && cell.getCellType() != CellType.NUMERIC) {
+                    continue;
+                }
+                if (estaCombinada(cell)) {
+                    continue;
+                }
+                String texto = cell.getCellType() == CellType.STRING
+                        ? cell.getStringCellValue()
+                        : String.valueOf(cell.getNumericCellValue());
+                maximos.merge(cell.getColumnIndex(), texto.length(), Math::max);
+            }
+            pendiente = null;
+        }
+
+        private boolean estaCombinada(Cell cell) {
+            for (CellRangeAddress region : sheet.getMergedRegions()) {
+                if (region.isInRange(cell)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     private CellStyle createDataStyle(Workbook workbook) {
         CellStyle style = workbook.createCellStyle();
         style.setAlignment(HorizontalAlignment.LEFT);
@@ -531,10 +579,13 @@ public class ReportService {
         return style;
     }
 
-    public byte[] generatePdfReport() throws IOException {
+    /**
+     * Genera el reporte PDF escribiéndolo directamente en el stream recibido.
+     * Los usuarios se leen por bloques y las tablas se vuelcan al documento
+     * a medida que se completan, de modo que la memoria no depende del volumen.
+     */
+    public void writePdfReport(OutputStream outputStream) throws IOException {
         try {
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            
             // Crear documento PDF
             com.itextpdf.kernel.pdf.PdfWriter writer = new com.itextpdf.kernel.pdf.PdfWriter(outputStream);
             com.itextpdf.kernel.pdf.PdfDocument pdfDoc = new com.itextpdf.kernel.pdf.PdfDocument(writer);
@@ -569,12 +620,7 @@ public class ReportService {
             
             long totalEquipos = equipoRepository.count();
             long totalUsuarios = usuarioRepository.count();
-            long usuariosConEquipos = equipoRepository.findAll().stream()
-                .map(EquipoInformatico::getUsuario)
-                .filter(Objects::nonNull)
-                .map(Usuario::getId)
-                .distinct()
-                .count();
+            long usuariosConEquipos = equipoRepository.countUsuariosConEquipos();
             
             String[] generalStats = {
                 "• Total de Equipos en el Sistema: " + totalEquipos,
@@ -595,27 +641,15 @@ public class ReportService {
             // Reportes por site
             addPdfSection(document, "🏢 DISTRIBUCIÓN DETALLADA POR SITES", boldFont, font);
             
-            // Obtener datos por site
-            Map<Site, List<Usuario>> usuariosPorSite = usuarioRepository.findAll()
-                .stream()
-                .filter(usuario -> usuario.getSite() != null)
-                .collect(Collectors.groupingBy(Usuario::getSite));
-            
-            Map<Site, List<EquipoInformatico>> equiposPorSite = equipoRepository.findAll()
-                .stream()
-                .filter(equipo -> equipo.getUsuario() != null && equipo.getUsuario().getSite() != null)
-                .collect(Collectors.groupingBy(equipo -> equipo.getUsuario().getSite()));
-            
             for (Site site : Site.values()) {
-                List<Usuario> usuarios = usuariosPorSite.getOrDefault(site, new ArrayList<>());
-                List<EquipoInformatico> equipos = equiposPorSite.getOrDefault(site, new ArrayList<>());
+                long usuariosSite = usuarioRepository.countBySite(site);
                 
-                if (usuarios.isEmpty()) {
+                if (usuariosSite == 0) {
                     continue;
                 }
                 
                 // Título del site - EXACTAMENTE LO QUE PEDISTE
-                document.add(new com.itextpdf.layout.element.Paragraph("\n📍 El site de " + site.toString() + " tiene " + usuarios.size() + " usuarios registrados")
+                document.add(new com.itextpdf.layout.element.Paragraph("\n📍 El site de " + site.toString() + " tiene " + usuariosSite + " usuarios registrados")
                     .setFont(boldFont)
                     .setFontSize(14)
                     .setBackgroundColor(com.itextpdf.kernel.colors.ColorConstants.LIGHT_GRAY)
@@ -623,19 +657,18 @@ public class ReportService {
                     .setMarginBottom(10));
                 
                 // Estadísticas del site
-                Set<Usuario> usuariosConEquiposSite = equipos.stream()
-                    .map(EquipoInformatico::getUsuario)
-                    .collect(Collectors.toSet());
+                long equiposSite = equipoRepository.countByUsuarioSite(site);
+                long usuariosConEquiposSite = equipoRepository.countUsuariosConEquiposBySite(site);
                 
                 document.add(new com.itextpdf.layout.element.Paragraph(
-                    "📊 " + usuariosConEquiposSite.size() + " usuarios tienen equipos asignados (" + equipos.size() + " equipos en total)")
+                    "📊 " + usuariosConEquiposSite + " usuarios tienen equipos asignados (" + equiposSite + " equipos en total)")
                     .setFont(font)
                     .setFontSize(11)
                     .setMarginLeft(20)
                     .setMarginBottom(15));
                 
                 // Crear tabla de usuarios y equipos
-                createPdfUserEquipmentTable(document, usuarios, equipos, font, boldFont);
+                createPdfUserEquipmentTable(document, site, font, boldFont);
                 
                 // Salto de página para el siguiente site (excepto el último)
                 if (!site.equals(Site.values()[Site.values().length - 1])) {
@@ -646,8 +679,6 @@ public class ReportService {
             // Cerrar documento
             document.close();
             
-            return outputStream.toByteArray();
-            
         } catch (Exception e) {
             throw new IOException("Error generando reporte PDF: " + e.getMessage(), e);
         }
@@ -665,13 +696,13 @@ public class ReportService {
     }
     
     private void createPdfUserEquipmentTable(com.itextpdf.layout.Document document, 
-                                           List<Usuario> usuarios, 
-                                           List<EquipoInformatico> equipos,
+                                           Site site,
                                            com.itextpdf.kernel.font.PdfFont font,
                                            com.itextpdf.kernel.font.PdfFont boldFont) {
         
-        // Crear tabla con 6 columnas
-        com.itextpdf.layout.element.Table table = new com.itextpdf.layout.element.Table(new float[]{1, 2, 2, 1.5f, 1.5f, 1})
+        // Tabla grande de 6 columnas: se agrega al documento antes de completarse
+        // y se vuelca con flush() después de cada bloque de usuarios
+        com.itextpdf.layout.element.Table table = new com.itextpdf.layout.element.Table(new float[]{1, 2, 2, 1.5f, 1.5f, 1}, true)
             .setWidth(com.itextpdf.layout.properties.UnitValue.createPercentValue(100))
             .setMarginBottom(20);
         
@@ -688,28 +719,43 @@ public class ReportService {
                 .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.CENTER));
         }
         
-        // Datos de usuarios y equipos
-        for (Usuario usuario : usuarios.stream()
-                .sorted(Comparator.comparing(Usuario::getLegajo, Comparator.nullsLast(Comparator.naturalOrder())))
-                .collect(Collectors.toList())) {
-            
-            List<EquipoInformatico> equiposUsuario = equipos.stream()
-                .filter(equipo -> equipo.getUsuario() != null && equipo.getUsuario().getId().equals(usuario.getId()))
-                .sorted(Comparator.comparing(e -> e.getTipo() != null ? e.getTipo().toString() : ""))
-                .collect(Collectors.toList());
-            
-            if (equiposUsuario.isEmpty()) {
-                // Usuario sin equipos
-                addPdfTableRow(table, usuario, null, font);
-            } else {
-                // Usuario con equipos - una fila por equipo
-                for (EquipoInformatico equipo : equiposUsuario) {
-                    addPdfTableRow(table, usuario, equipo, font);
+        document.add(table);
+        
+        // Datos de usuarios y equipos, leídos por bloques ordenados por legajo
+        Pageable bloque = PageRequest.of(0, BLOQUE_USUARIOS);
+        List<Usuario> usuarios = usuarioRepository.findBySiteOrderByLegajoAsc(site, bloque);
+        while (!usuarios.isEmpty()) {
+            List<Long> ids = usuarios.stream().map(Usuario::getId).collect(Collectors.toList());
+            Map<Long, List<EquipoInformatico>> equiposPorUsuario = equipoRepository.findByUsuarioIds(ids)
+                .stream()
+                .collect(Collectors.groupingBy(equipo -> equipo.getUsuario().getId()));
+            
+            for (Usuario usuario : usuarios) {
+                List<EquipoInformatico> equiposUsuario = equiposPorUsuario.getOrDefault(usuario.getId(), Collections.emptyList());
+                
+                if (equiposUsuario.isEmpty()) {
+                    // Usuario sin equipos
+                    addPdfTableRow(table, usuario, null, font);
+                } else {
+                    // Usuario con equipos - una fila por equipo
+                    for (EquipoInformatico equipo : equiposUsuario) {
+                        addPdfTableRow(table, usuario, equipo, font);
+                    }
                 }
             }
+            
+            table.flush();
+            
+            String ultimoLegajo = usuarios.get(usuarios.size() - 1).getLegajo();
+            boolean ultimoBloque = usuarios.size() < BLOQUE_USUARIOS;
+            // Liberar las entidades ya escritas del contexto de persistencia
+            entityManager.clear();
+            usuarios = ultimoBloque
+                ? Collections.emptyList()
+                : usuarioRepository.findBySiteAndLegajoGreaterThanOrderByLegajoAsc(site, ultimoLegajo, bloque);
         }
         
-        document.add(table);
+        table.complete();
     }
     
     private void addPdfTableRow(com.itextpdf.layout.element.Table table, Usuario usuario, 
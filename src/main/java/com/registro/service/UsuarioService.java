@@ -1,21 +1,48 @@
 // src/main/java/com/registro/service/UsuarioService.java
 package com.registro.service;
 
+import com.registro.dto.UsuarioResumen;
+import com.registro.model.Archivo;
 import com.registro.model.Site;
 import com.registro.model.Usuario;
+import com.registro.repository.IObjetoAlmacenadoRepository;
 import com.registro.repository.IUsuarioRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
+@Slf4j
 public class UsuarioService {
 
+    /** Columnas por las que se puede ordenar el directorio. */
+    private static final Set<String> CAMPOS_ORDEN_DIRECTORIO = Set.of("legajo", "nombre", "apellido", "site");
+
     private final IUsuarioRepository usuarioRepository;
+    private final DataVersion dataVersion;
+    private final EstadisticasService estadisticasService;
+    private final IObjetoAlmacenadoRepository objetoRepository;
+    private final ArchivoService archivoService;
 
-    public UsuarioService(IUsuarioRepository usuarioRepository) {
+    public UsuarioService(IUsuarioRepository usuarioRepository, DataVersion dataVersion,
+                          EstadisticasService estadisticasService,
+                          IObjetoAlmacenadoRepository objetoRepository,
+                          ArchivoService archivoService) {
         this.usuarioRepository = usuarioRepository;
+        this.dataVersion = dataVersion;
+        this.estadisticasService = estadisticasService;
+        this.objetoRepository = objetoRepository;
+        this.archivoService = archivoService;
     }
 
     /**
@@ -43,7 +70,34 @@ public class UsuarioService {
         nuevo.setDireccion(direccion);
         nuevo.setSite(site);
 
-        return usuarioRepository.save(nuevo);
+        Usuario guardado = usuarioRepository.save(nuevo);
+        dataVersion.incrementar();
+        estadisticasService.usuarioGuardado(guardado);
+        return guardado;
+    }
+
+    /**
+     * Alta completa de un usuario: datos, archivos ya subidos (ver
+     * {@link ArchivoService#subirContenido}) y equipos, en una sola transacción.
+     * Si falla cualquier paso no queda nada registrado; el contenido subido queda
+     * sin referencias y lo borra la limpieza de {@link ArchivoService}.
+     *
+     * @param altaEquipos crea o asigna los equipos del usuario ya guardado
+     */
+    @Transactional
+    public Usuario crearUsuarioCompleto(String legajo,
+                                        String nombre,
+                                        String apellido,
+                                        String telefono,
+                                        String correoElectronico,
+                                        String direccion,
+                                        Site site,
+                                        List<Archivo> archivosSubidos,
+                                        Consumer<Usuario> altaEquipos) {
+        Usuario creado = crearUsuario(legajo, nombre, apellido, telefono, correoElectronico, direccion, site);
+        archivoService.registrarSubidos(creado.getId(), archivosSubidos);
+        altaEquipos.accept(creado);
+        return creado;
     }
 
     /**
@@ -58,6 +112,24 @@ public class UsuarioService {
                 );
     }
 
+    /**
+     * Busca un usuario por su legajo junto con sus equipos y archivos.
+     * Lanza RuntimeException si no lo encuentra.
+     */
+    @Transactional(readOnly = true)
+    public Usuario obtenerUsuarioConDetalle(String legajo) {
+        return usuarioRepository.findDetalleByLegajo(legajo)
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado: " + legajo));
+    }
+
+    /**
+     * Busca un usuario por id junto con sus equipos y archivos.
+     */
+    @Transactional(readOnly = true)
+    public Optional<Usuario> buscarUsuarioConDetalle(Long id) {
+        return usuarioRepository.findDetalleById(id);
+    }
+
     /**
      * Devuelve todos los usuarios.
      */
@@ -67,7 +139,66 @@ public class UsuarioService {
     }
 
     /**
-     * Elimina un usuario identificado por su legajo.
+     * Devuelve todos los usuarios con sus cantidades de equipos y archivos,
+     * sin cargar las colecciones.
+     */
+    @Transactional(readOnly = true)
+    public List<UsuarioResumen> listarResumenes() {
+        return usuarioRepository.findResumenes();
+    }
+
+    /**
+     * Página del directorio de empleados, filtrada por site, por si tiene equipos
+     * y por prefijo de apellido, nombre o legajo. El orden se resuelve en la base.
+     */
+    @Transactional(readOnly = true)
+    public Page<UsuarioResumen> buscarDirectorio(String site, String conEquipos, String prefijo,
+                                                 int page, int size, String sortBy, String sortDir) {
+        String campo = CAMPOS_ORDEN_DIRECTORIO.contains(sortBy) ? sortBy : "legajo";
+        Sort.Direction direccion = "desc".equalsIgnoreCase(sortDir) ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort orden = Sort.by(direccion, campo).and(Sort.by(Sort.Direction.ASC, "id"));
+
+        return usuarioRepository.buscarDirectorio(filtroSite(site), filtroEquipos(conEquipos), filtroPrefijo(prefijo),
+                PageRequest.of(Math.max(page, 0), size, orden));
+    }
+
+    /**
+     * Equipos asignados a los usuarios que cumplen los mismos filtros que {@link #buscarDirectorio}.
+     */
+    @Transactional(readOnly = true)
+    public long contarEquiposDirectorio(String site, String conEquipos, String prefijo) {
+        return usuarioRepository.contarEquiposDirectorio(filtroSite(site), filtroEquipos(conEquipos), filtroPrefijo(prefijo));
+    }
+
+    private static Site filtroSite(String site) {
+        if (site == null || site.isBlank()) {
+            return null;
+        }
+        try {
+            return Site.valueOf(site.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Filtro de site inválido: {}", site);
+            return null;
+        }
+    }
+
+    private static Boolean filtroEquipos(String conEquipos) {
+        return (conEquipos == null || conEquipos.isBlank()) ? null : Boolean.valueOf(conEquipos.trim());
+    }
+
+    private static String filtroPrefijo(String prefijo) {
+        if (prefijo == null || prefijo.isBlank()) {
+            return null;
+        }
+        // Los comodines que escribe el usuario se buscan literalmente (ESCAPE '\' en la consulta)
+        return prefijo.trim().toLowerCase()
+                .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    /**
+     * Elimina un usuario identificado por su legajo. Sus archivos se borran en
+     * cascada, así que antes se liberan sus referencias a los objetos compartidos
+     * del almacenamiento; la limpieza de ArchivoService borra los que quedan sin ninguna.
      * Lanza RuntimeException si no existe.
      */
     @Transactional
@@ -76,11 +207,24 @@ public class UsuarioService {
             .orElseThrow(() ->
                 new RuntimeException("No existe usuario con legajo " + legajo)
             );
+        Map<String, Integer> referencias = new HashMap<>();
+        for (Archivo archivo : usuario.getArchivos()) {
+            if (archivo.getHash() != null) {
+                referencias.merge(archivo.getHash(), 1, Integer::sum);
+            }
+        }
+        referencias.forEach((hash, cantidad) -> objetoRepository.sumarReferencias(hash, -cantidad));
+
         usuarioRepository.delete(usuario);
+        dataVersion.incrementar();
+        estadisticasService.usuarioEliminado();
     }
 
     @Transactional
     public Usuario actualizarUsuario(Usuario usuario) {
-    return usuarioRepository.save(usuario);
+        Usuario guardado = usuarioRepository.save(usuario);
+        dataVersion.incrementar();
+        estadisticasService.usuarioGuardado(guardado);
+        return guardado;
     }
 }
@@ -0,0 +1,116 @@
+package com.registro.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.registro.model.AuditLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AuditLogWriterTest {
+
+    @TempDir
+    Path directorio;
+
+    private JdbcTemplate jdbcTemplate;
+    private final List<AuditLog> insertados = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void preparar() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class))).thenAnswer(inv -> {
+            insertados.addAll(inv.getArgument(1));
+            return new int[0][];
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private AuditLogWriter crearWriter() throws Exception {
+        AuditCounterService contadores = mock(AuditCounterService.class);
+        when(contadores.insertarYContar(any())).thenAnswer(inv ->
+                ((Supplier<List<AuditLog>>) inv.getArgument(0)).get() != null);
+        return new AuditLogWriter(jdbcTemplate, mock(PlatformTransactionManager.class), contadores,
+                new ObjectMapper(), new SimpleMeterRegistry(), 100, 2, 50, directorio.toString());
+    }
+
+    @Test
+    void reprocesarDesbordeApartaLineaCortadaYNoDuplica() throws Exception {
+        Path desborde = directorio.resolve("auditoria-2026-01-01.jsonl");
+        Files.write(desborde, List.of(
+                "[\"ana\",\"CREAR\",\"Usuario\",\"1\",\"alta\",\"2026-01-01T10:00\",\"10.0.0.1\"]",
+                "[\"ana\",\"EDITAR\",\"Usuario\",\"1\",\"cambio\",\"2026-01-01T10:01\",\"10.0.0.1\"]",
+                "[\"ana\",\"ELIMINAR\",\"Usuario\",\"1\",\"baja\",\"2026-01-01T10:02\",\"10.0.0.1\"]",
+                "[\"ana\",\"LOGIN\",\"Us"), StandardCharsets.UTF_8);
+
+        AuditLogWriter writer = crearWriter();
+        writer.reprocesarDesborde();
+
+        assertEquals(List.of("CREAR", "EDITAR", "ELIMINAR"), insertados.stream().map(AuditLog::getAction).toList());
+        assertFalse(Files.exists(directorio.resolve("reproceso-auditoria-2026-01-01.jsonl")));
+        Path rechazado = directorio.resolve("reproceso-auditoria-2026-01-01.jsonl.rechazado");
+        assertEquals(List.of("[\"ana\",\"LOGIN\",\"Us"), Files.readAllLines(rechazado, StandardCharsets.UTF_8));
+
+        // Una segunda pasada no vuelve a insertar nada
+        writer.reprocesarDesborde();
+        assertEquals(3, insertados.size());
+    }
+
+    @Test
+    void cerrarInsertaLoQueQuedaEnLaCola() throws Exception {
+        AuditLogWriter writer = crearWriter();
+        for (int i = 0; i < 5; i++) {
+            writer.registrar(new AuditLog("ana", "CREAR", "Usuario", String.valueOf(i), "alta " + i));
+        }
+
+        writer.cerrar();
+
+        assertEquals(5, insertados.size());
+        assertEquals(0, writer.getEnCola());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void cerrarConLaBaseCaidaVuelcaLaColaADisco() throws Exception {
+        when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataAccessResourceFailureException("sin conexión"));
+        AuditLogWriter writer = crearWriter();
+        for (int i = 0; i < 5; i++) {
+            writer.registrar(new AuditLog("ana", "CREAR", "Usuario", String.valueOf(i), "alta " + i));
+        }
+
+        writer.cerrar();
+
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            List<Path> desbordes = archivos.filter(p -> p.getFileName().toString().startsWith("auditoria-")).toList();
+            assertEquals(1, desbordes.size());
+            assertEquals(5, Files.readAllLines(desbordes.get(0), StandardCharsets.UTF_8).size());
+        }
+        assertTrue(insertados.isEmpty());
+    }
+}